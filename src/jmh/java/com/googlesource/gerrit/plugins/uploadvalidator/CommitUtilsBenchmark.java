@@ -0,0 +1,223 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.server.git.validators.CommitValidationMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the tree walks which are done for every received commit, on synthetic repositories of
+ * different shapes.
+ *
+ * <p>Run with {@code bazel run //:uploadvalidator_benchmarks -- CommitUtilsBenchmark -prof gc} to
+ * also report the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CommitUtilsBenchmark {
+
+  /** The shape of the validated commit and its history. */
+  public enum Shape {
+    /** A few files are added to a folder of 100,000 generated files. */
+    WIDE,
+    /** A few files are added and modified 32 folders deep, next to 10,000 other deep files. */
+    DEEP,
+    /** An octopus merge of 8 branches, each adding 1,000 files to a base of 10,000 files. */
+    OCTOPUS,
+    /** A root commit of 100,000 files in 100 folders. */
+    ROOT
+  }
+
+  @Param public Shape shape;
+
+  private InMemoryRepository repo;
+  private RevWalk rw;
+  private RevCommit commit;
+  private ImmutableList<ChangedEntry> entries;
+  private DuplicatePathnameValidator duplicatePathnameValidator;
+
+  @Setup
+  public void setUp() throws Exception {
+    repo = new InMemoryRepository(new DfsRepositoryDescription("benchmark"));
+    // All objects are written into a single pack, a pack per object would slow down the reads.
+    try (ObjectInserter ins = repo.newObjectInserter()) {
+      ObjectId id;
+      switch (shape) {
+        case WIDE:
+          id = wide(ins);
+          break;
+        case DEEP:
+          id = deep(ins);
+          break;
+        case OCTOPUS:
+          id = octopus(ins);
+          break;
+        case ROOT:
+        default:
+          id = commit(ins, files(ins, "dir%02d/file%06d.txt", 100_000));
+          break;
+      }
+      ins.flush();
+      rw = new RevWalk(repo);
+      commit = rw.parseCommit(id);
+      entries = CommitUtils.getChangedEntries(repo, commit, rw);
+    }
+    duplicatePathnameValidator =
+        new DuplicatePathnameValidator(new TreeNameIndexCache(CacheBuilder.newBuilder().build()));
+  }
+
+  @TearDown
+  public void tearDown() {
+    rw.close();
+    repo.close();
+  }
+
+  private static ObjectId wide(ObjectInserter ins) throws Exception {
+    List<DirCacheEntry> files = files(ins, "assets/generated%2$06d.png", 100_000);
+    ObjectId parent = commit(ins, files);
+    for (int i = 0; i < 5; i++) {
+      files.add(file(ins, "assets/added" + i + ".png", "added" + i));
+    }
+    return commit(ins, files, parent);
+  }
+
+  private static ObjectId deep(ObjectInserter ins) throws Exception {
+    StringBuilder folder = new StringBuilder();
+    for (int i = 0; i < 32; i++) {
+      folder.append("level").append(i).append('/');
+    }
+    List<DirCacheEntry> files = files(ins, folder + "%02d/file%05d.txt", 10_000);
+    ObjectId parent = commit(ins, files);
+    for (int i = 0; i < 10; i++) {
+      files.set(i * 1000, file(ins, files.get(i * 1000).getPathString(), "modified" + i));
+      files.add(file(ins, folder + "added/file" + i + ".txt", "added" + i));
+    }
+    return commit(ins, files, parent);
+  }
+
+  private static ObjectId octopus(ObjectInserter ins) throws Exception {
+    List<DirCacheEntry> files = files(ins, "base%02d/file%05d.txt", 10_000);
+    ObjectId base = commit(ins, files);
+    ObjectId[] parents = new ObjectId[8];
+    for (int b = 0; b < parents.length; b++) {
+      List<DirCacheEntry> branch = new ArrayList<>(files);
+      List<DirCacheEntry> added = files(ins, "branch" + b + "/%02d/file%05d.txt", 1_000);
+      branch.addAll(added);
+      parents[b] = commit(ins, branch, base);
+      files.addAll(added);
+    }
+    files.add(file(ins, "merged.txt", "merged"));
+    return commit(ins, files, parents);
+  }
+
+  /**
+   * Creates files with distinct content. The path pattern gets the number of one of 100 folders and
+   * the number of the file.
+   */
+  private static List<DirCacheEntry> files(ObjectInserter ins, String pattern, int count)
+      throws Exception {
+    List<DirCacheEntry> files = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      files.add(file(ins, String.format(pattern, i % 100, i), Integer.toString(i)));
+    }
+    return files;
+  }
+
+  private static DirCacheEntry file(ObjectInserter ins, String path, String content)
+      throws Exception {
+    DirCacheEntry entry = new DirCacheEntry(path);
+    entry.setFileMode(FileMode.REGULAR_FILE);
+    entry.setObjectId(ins.insert(Constants.OBJ_BLOB, content.getBytes(UTF_8)));
+    return entry;
+  }
+
+  private static ObjectId commit(ObjectInserter ins, List<DirCacheEntry> files, ObjectId... parents)
+      throws Exception {
+    DirCache dc = DirCache.newInCore();
+    DirCacheBuilder builder = dc.builder();
+    for (DirCacheEntry file : files) {
+      builder.add(file);
+    }
+    builder.finish();
+    PersonIdent ident = new PersonIdent("Benchmark", "benchmark@example.com");
+    CommitBuilder commit = new CommitBuilder();
+    commit.setTreeId(dc.writeTree(ins));
+    commit.setParentIds(parents);
+    commit.setAuthor(ident);
+    commit.setCommitter(ident);
+    commit.setMessage("benchmark");
+    return ins.insert(commit);
+  }
+
+  @Benchmark
+  public void visitChangedEntries(Blackhole bh) throws Exception {
+    CommitUtils.visitChangedEntries(repo, commit, rw, tw -> bh.consume(tw.getRawPath()));
+  }
+
+  @Benchmark
+  public Map<String, ObjectId> getChangedContent() throws Exception {
+    return CommitUtils.getChangedContent(repo, commit, rw);
+  }
+
+  @Benchmark
+  public List<CommitValidationMessage> duplicatePathnames() throws Exception {
+    return duplicatePathnameValidator.performValidation(Locale.ENGLISH, rw, commit, entries);
+  }
+
+  /** Checks for duplicate pathnames without reusing the indexes of the parent trees. */
+  @Benchmark
+  public List<CommitValidationMessage> duplicatePathnamesWithoutIndexCache() throws Exception {
+    return new DuplicatePathnameValidator(new TreeNameIndexCache(CacheBuilder.newBuilder().build()))
+        .performValidation(Locale.ENGLISH, rw, commit, entries);
+  }
+}
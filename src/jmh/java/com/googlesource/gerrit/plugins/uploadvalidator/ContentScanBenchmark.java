@@ -0,0 +1,281 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.EMPTY_PLUGIN_CONFIG;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.server.git.validators.CommitValidationMessage;
+import com.google.gerrit.server.patch.DiffOperations;
+import com.google.gerrit.server.patch.filediff.Edit;
+import com.google.gerrit.server.patch.filediff.FileDiffOutput;
+import com.google.gerrit.server.patch.filediff.TaggedEdit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the scans of the content of changed files, for growing numbers of blocked keyword
+ * patterns, file sizes and mixes of text and binary files.
+ *
+ * <p>The {@code megabytes} counter reports the scan throughput in MB/s. Run with {@code bazel run
+ * //:uploadvalidator_benchmarks -- ContentScanBenchmark -prof gc} to also report the bytes
+ * allocated per operation as {@code gc.alloc.rate.norm}. The 500 MB files need a heap of a few GB,
+ * smaller sizes can be selected with e.g. {@code -p size=1024,1048576}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ContentScanBenchmark {
+
+  /** The changed files of the scanned commit. */
+  public enum Mix {
+    /** A single text file. */
+    TEXT,
+    /** A single binary file. */
+    BINARY,
+    /** A text file and a binary file of half the size each. */
+    MIXED
+  }
+
+  /** Counts the scanned megabytes, JMH reports them per second. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Scanned {
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      megabytes = 0;
+    }
+  }
+
+  private static final double MEGABYTE = 1024 * 1024;
+
+  /**
+   * The number of blocked keyword patterns. Every fourth pattern is a regular expression, the
+   * others are literal keywords. None of them matches the scanned files.
+   */
+  @Param({"1", "10", "100", "1000"})
+  public int patterns;
+
+  /** The total size of the changed files in bytes. */
+  @Param({"1024", "1048576", "524288000"})
+  public int size;
+
+  @Param public Mix mix;
+
+  private InMemoryRepository repo;
+  private RevWalk rw;
+  private RevCommit commit;
+  private ImmutableList<ChangedEntry> entries;
+  private ImmutableList<Pattern> blockedKeywordPatterns;
+  private ContentTypeUtil contentTypeUtil;
+  private BlockedKeywordValidator blockedKeywordValidator;
+  private InvalidLineEndingValidator invalidLineEndingValidator;
+  private double prefixMegabytes;
+
+  @Setup
+  public void setUp() throws Exception {
+    ImmutableList.Builder<Pattern> b = ImmutableList.builder();
+    for (int i = 0; i < patterns; i++) {
+      b.add(
+          Pattern.compile(
+              i % 4 == 3 ? String.format("secret-%04d=[0-9a-f]{8}", i) : "keyword" + i));
+    }
+    blockedKeywordPatterns = b.build();
+
+    Map<String, byte[]> files = new HashMap<>();
+    switch (mix) {
+      case TEXT:
+        files.put("file.txt", text(size));
+        break;
+      case BINARY:
+        files.put("file.bin", binary(size));
+        break;
+      case MIXED:
+      default:
+        files.put("file.txt", text(size / 2));
+        files.put("file.bin", binary(size - size / 2));
+        break;
+    }
+
+    // Every file is changed completely.
+    Map<String, FileDiffOutput> modifiedFiles = new HashMap<>();
+    for (Map.Entry<String, byte[]> file : files.entrySet()) {
+      FileDiffOutput fileDiff = mock(FileDiffOutput.class);
+      when(fileDiff.edits())
+          .thenReturn(
+              ImmutableList.of(
+                  TaggedEdit.create(
+                      Edit.create(0, 0, 0, numberOfLines(file.getValue())),
+                      /* dueToRebase= */ false)));
+      modifiedFiles.put(file.getKey(), fileDiff);
+      prefixMegabytes +=
+          Math.min(file.getValue().length, ContentTypeUtil.DEFAULT_CONTENT_PREFIX_SIZE) / MEGABYTE;
+    }
+    DiffOperations diffOperations = mock(DiffOperations.class);
+    when(diffOperations.listModifiedFilesAgainstParent(any(), any(), anyInt(), any()))
+        .thenReturn(modifiedFiles);
+
+    repo = new InMemoryRepository(new DfsRepositoryDescription("benchmark"));
+    rw = new RevWalk(repo);
+    commit = rw.parseCommit(commit(repo, files));
+    files.clear();
+    entries = CommitUtils.getChangedEntries(repo, commit, rw);
+
+    // The content types are detected for every operation rather than taken from the cache.
+    contentTypeUtil =
+        new ContentTypeUtil(
+            TestUtils.PATTERN_CACHE,
+            CacheBuilder.newBuilder().maximumSize(0).build(),
+            ContentTypeUtil.DEFAULT_CONTENT_PREFIX_SIZE);
+    blockedKeywordValidator =
+        new BlockedKeywordValidator(
+            null, contentTypeUtil, TestUtils.PATTERN_CACHE, null, diffOperations, null);
+    invalidLineEndingValidator = new InvalidLineEndingValidator(contentTypeUtil, diffOperations);
+  }
+
+  @TearDown
+  public void tearDown() {
+    rw.close();
+    repo.close();
+  }
+
+  /** @return text lines without a CR, padded to the passed size. */
+  private static byte[] text(int size) {
+    byte[] content = new byte[size];
+    int pos = 0;
+    for (int line = 0; pos < size; line++) {
+      byte[] l =
+          String.format("%08d the quick brown fox jumps over the lazy dog\n", line).getBytes(UTF_8);
+      int n = Math.min(l.length, size - pos);
+      System.arraycopy(l, 0, content, pos, n);
+      pos += n;
+    }
+    return content;
+  }
+
+  /** @return repeated runs of all byte values, starting with a NUL. */
+  private static byte[] binary(int size) {
+    byte[] content = new byte[size];
+    for (int i = 0; i < size; i++) {
+      content[i] = (byte) i;
+    }
+    return content;
+  }
+
+  private static int numberOfLines(byte[] content) {
+    int lines = 0;
+    for (byte c : content) {
+      if (c == '\n') {
+        lines++;
+      }
+    }
+    return lines;
+  }
+
+  private static ObjectId commit(InMemoryRepository repo, Map<String, byte[]> files)
+      throws Exception {
+    try (ObjectInserter ins = repo.newObjectInserter()) {
+      DirCache dc = DirCache.newInCore();
+      DirCacheBuilder builder = dc.builder();
+      for (Map.Entry<String, byte[]> file : files.entrySet()) {
+        DirCacheEntry entry = new DirCacheEntry(file.getKey());
+        entry.setFileMode(FileMode.REGULAR_FILE);
+        entry.setObjectId(ins.insert(Constants.OBJ_BLOB, file.getValue()));
+        builder.add(entry);
+      }
+      builder.finish();
+      PersonIdent ident = new PersonIdent("Benchmark", "benchmark@example.com");
+      CommitBuilder commit = new CommitBuilder();
+      commit.setTreeId(dc.writeTree(ins));
+      commit.setAuthor(ident);
+      commit.setCommitter(ident);
+      commit.setMessage("benchmark");
+      ObjectId id = ins.insert(commit);
+      ins.flush();
+      return id;
+    }
+  }
+
+  @Benchmark
+  public List<CommitValidationMessage> blockedKeywords(Scanned scanned) throws Exception {
+    scanned.megabytes += size / MEGABYTE;
+    return blockedKeywordValidator.performValidation(
+        TestUtils.createCommitContext(repo, rw, commit),
+        blockedKeywordPatterns,
+        EMPTY_PLUGIN_CONFIG);
+  }
+
+  @Benchmark
+  public List<CommitValidationMessage> invalidLineEndings(Scanned scanned) throws Exception {
+    scanned.megabytes += size / MEGABYTE;
+    return invalidLineEndingValidator.performValidation(
+        TestUtils.createCommitContext(repo, rw, commit), EMPTY_PLUGIN_CONFIG);
+  }
+
+  /** Detects the content types of the changed files, which only reads a prefix of each file. */
+  @Benchmark
+  public void contentType(Scanned scanned, Blackhole bh) throws Exception {
+    scanned.megabytes += prefixMegabytes;
+    for (ChangedEntry entry : entries) {
+      bh.consume(
+          contentTypeUtil.getContentType(
+              entry.getObjectId(),
+              rw.getObjectReader().open(entry.getObjectId()),
+              entry.getPath()));
+    }
+  }
+}
@@ -0,0 +1,71 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+
+/**
+ * Holds the inflated content of the blobs validated in one push, so that all content checks on a
+ * blob reuse one buffer, also across the commits of the push which share the blob.
+ *
+ * <p>Every push gets its own cache, which is dropped with the push, see {@link
+ * ValidationEngine}. Only blobs up to {@link #MAX_CACHED_BLOB_SIZE} bytes are cached, larger blobs
+ * are streamed from the repository. At most {@link #MAX_PUSH_CONTENT_SIZE} bytes are held per push,
+ * older content is evicted beyond that.
+ */
+public class BlobContentCache {
+  static final int MAX_CACHED_BLOB_SIZE = 1024 * 1024;
+  static final int MAX_PUSH_CONTENT_SIZE = 16 * 1024 * 1024;
+
+  /** Creates the cache of a single push. */
+  static BlobContentCache forPush() {
+    return new BlobContentCache(
+        CacheBuilder.newBuilder()
+            .maximumWeight(MAX_PUSH_CONTENT_SIZE)
+            .weigher((ObjectId key, byte[] value) -> 1 + value.length)
+            .build());
+  }
+
+  private final Cache<ObjectId, byte[]> cache;
+
+  @VisibleForTesting
+  BlobContentCache(Cache<ObjectId, byte[]> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Opens the passed blob. The returned loader serves the cached content if the blob is small
+   * enough to be cached, otherwise it streams the blob from the repository.
+   */
+  public ObjectLoader open(ObjectReader reader, ObjectId blobId) throws IOException {
+    byte[] content = cache.getIfPresent(blobId);
+    if (content == null) {
+      ObjectLoader ol = reader.open(blobId, Constants.OBJ_BLOB);
+      if (ol.isLarge() || ol.getSize() > MAX_CACHED_BLOB_SIZE) {
+        return ol;
+      }
+      content = ol.getCachedBytes();
+      cache.put(blobId.copy(), content);
+    }
+    return new ObjectLoader.SmallObject(Constants.OBJ_BLOB, content);
+  }
+}
@@ -18,13 +18,13 @@ import static com.googlesource.gerrit.plugins.uploadvalidator.PatternCacheModule
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
-import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.entities.Patch;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.Project.NameKey;
@@ -39,56 +39,40 @@ import com.google.gerrit.extensions.validators.CommentValidator;
 import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.ProjectConfigEntry;
-import com.google.gerrit.server.events.CommitReceivedEvent;
-import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.validators.CommitValidationException;
-import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
 import com.google.gerrit.server.patch.DiffNotAvailableException;
 import com.google.gerrit.server.patch.DiffOperations;
-import com.google.gerrit.server.patch.DiffOptions;
 import com.google.gerrit.server.patch.filediff.FileDiffOutput;
 import com.google.gerrit.server.patch.filediff.TaggedEdit;
 import com.google.gerrit.server.project.NoSuchProjectException;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.google.inject.name.Named;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.eclipse.jgit.diff.Edit;
-import org.eclipse.jgit.diff.RawText;
-import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 
 /**
  * A validator for checking for use of blocked keywords in commit content and comments.
  *
- * <p>This class implements both {@link CommitValidationListener} and {@link CommentValidator}
- * validator classes to run its list of blocked keywords against commit content and comments.
+ * <p>This class implements both {@link ValidationRule.Factory} and {@link CommentValidator} to run
+ * its list of blocked keywords against commit content and comments.
  */
-public class BlockedKeywordValidator implements CommitValidationListener, CommentValidator {
-  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
-
+public class BlockedKeywordValidator implements ValidationRule.Factory, CommentValidator {
   // These keys are used for turning on specific validation elements.
   // i.e. enableSkipValidation = blockedKeyword will enabled skipRef and skipGroup checks
   // i.e. disabledValidation = blockedKeywordComments will disable the comment blocked keyword check
@@ -101,7 +85,7 @@ public class BlockedKeywordValidator implements CommitValidationListener, Commen
     return new AbstractModule() {
       @Override
       protected void configure() {
-        DynamicSet.bind(binder(), CommitValidationListener.class).to(BlockedKeywordValidator.class);
+        DynamicSet.bind(binder(), ValidationRule.Factory.class).to(BlockedKeywordValidator.class);
         DynamicSet.bind(binder(), CommentValidator.class).to(BlockedKeywordValidator.class);
         bind(ProjectConfigEntry.class)
             .annotatedWith(Exports.named(KEY_CHECK_BLOCKED_KEYWORD_PATTERN))
@@ -120,10 +104,9 @@ public class BlockedKeywordValidator implements CommitValidationListener, Commen
 
   private final String pluginName;
   private final PluginConfigFactory cfgFactory;
-  private final GitRepositoryManager repoManager;
   private final LoadingCache<String, Pattern> patternCache;
   private final ContentTypeUtil contentTypeUtil;
-  private final ValidatorConfig validatorConfig;
+  private final Provider<ValidationPlanCache> planCache;
   private final DiffOperations diffOperations;
 
   @Inject
@@ -132,16 +115,14 @@ public class BlockedKeywordValidator implements CommitValidationListener, Commen
       ContentTypeUtil contentTypeUtil,
       @Named(CACHE_NAME) LoadingCache<String, Pattern> patternCache,
       PluginConfigFactory cfgFactory,
-      GitRepositoryManager repoManager,
       DiffOperations diffOperations,
-      ValidatorConfig validatorConfig) {
+      Provider<ValidationPlanCache> planCache) {
     this.pluginName = pluginName;
     this.patternCache = patternCache;
     this.cfgFactory = cfgFactory;
-    this.repoManager = repoManager;
     this.contentTypeUtil = contentTypeUtil;
     this.diffOperations = diffOperations;
-    this.validatorConfig = validatorConfig;
+    this.planCache = planCache;
   }
 
   static boolean isActive(PluginConfig cfg) {
@@ -149,46 +130,18 @@ public class BlockedKeywordValidator implements CommitValidationListener, Commen
   }
 
   @Override
-  public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
-      throws CommitValidationException {
-    try {
-      PluginConfig cfg =
-          cfgFactory.getFromProjectConfigWithInheritance(
-              receiveEvent.project.getNameKey(), pluginName);
-      if (isActive(cfg)
-          && validatorConfig.isEnabled(
-              receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
-              receiveEvent.getRefName(),
-              KEY_CHECK_BLOCKED_KEYWORD,
-              receiveEvent.pushOptions)) {
-        ImmutableMap<String, Pattern> blockedKeywordPatterns =
-            patternCache.getAll(
-                Arrays.asList(cfg.getStringList(KEY_CHECK_BLOCKED_KEYWORD_PATTERN)));
-        try (Repository repo = repoManager.openRepository(receiveEvent.project.getNameKey())) {
-          List<CommitValidationMessage> messages =
-              performValidation(
-                  receiveEvent.project.getNameKey(),
-                  repo,
-                  receiveEvent.commit,
-                  receiveEvent.revWalk,
-                  blockedKeywordPatterns.values(),
-                  cfg);
+  public String getValidatorOp() {
+    return KEY_CHECK_BLOCKED_KEYWORD;
+  }
 
-          if (!messages.isEmpty()) {
-            throw new CommitValidationException(
-                "includes files containing blocked keywords", messages);
-          }
-        }
-      }
-    } catch (NoSuchProjectException
-        | IOException
-        | ExecutionException
-        | DiffNotAvailableException e) {
-      logger.atWarning().withCause(e).log("blocked keywords commit validation failed");
-      throw new CommitValidationException("failed to check on blocked keywords", e);
+  @Override
+  public ValidationRule create(PluginConfig cfg) throws ExecutionException {
+    if (!isActive(cfg)) {
+      return null;
     }
-    return Collections.emptyList();
+    ImmutableMap<String, Pattern> blockedKeywordPatterns =
+        patternCache.getAll(Arrays.asList(cfg.getStringList(KEY_CHECK_BLOCKED_KEYWORD_PATTERN)));
+    return new Rule(blockedKeywordPatterns.values(), cfg);
   }
 
   @Override
@@ -198,17 +151,16 @@ public class BlockedKeywordValidator implements CommitValidationListener, Commen
       NameKey projectNameKey = Project.nameKey(ctx.getProject());
       PluginConfig cfg = cfgFactory.getFromProjectConfigWithInheritance(projectNameKey, pluginName);
       if (isActive(cfg)
-          && validatorConfig.isEnabled(
-              null,
-              projectNameKey,
-              "",
-              KEY_CHECK_COMMENT_BLOCKED_KEYWORD,
-              ImmutableListMultimap.of())) {
+          && planCache
+              .get()
+              .get(projectNameKey)
+              .isEnabled(null, "", KEY_CHECK_COMMENT_BLOCKED_KEYWORD, ImmutableListMultimap.of())) {
         ImmutableMap<String, Pattern> blockedKeywordPatterns =
             patternCache.getAll(
                 Arrays.asList(cfg.getStringList(KEY_CHECK_BLOCKED_KEYWORD_PATTERN)));
+        KeywordMatcher keywordMatcher = new KeywordMatcher(blockedKeywordPatterns.values());
         return comments.stream()
-            .map(comment -> validateComment(blockedKeywordPatterns, comment))
+            .map(comment -> validateComment(keywordMatcher, comment))
             .filter(Optional::isPresent)
             .map(Optional::get)
             .collect(ImmutableList.toImmutableList());
@@ -221,48 +173,77 @@ public class BlockedKeywordValidator implements CommitValidationListener, Commen
 
   @VisibleForTesting
   List<CommitValidationMessage> performValidation(
-      Project.NameKey project,
-      Repository repo,
-      RevCommit c,
-      RevWalk revWalk,
-      ImmutableCollection<Pattern> blockedKeywordPatterns,
-      PluginConfig cfg)
-      throws IOException, ExecutionException, DiffNotAvailableException {
-    List<CommitValidationMessage> messages = new LinkedList<>();
-    checkCommitMessageForBlockedKeywords(blockedKeywordPatterns, messages, c.getFullMessage());
-    Map<String, ObjectId> content = CommitUtils.getChangedContent(repo, c, revWalk);
-    Map<String, FileDiffOutput> fileDiffs =
-        diffOperations.listModifiedFilesAgainstParent(
-            project, c, /* parentNum= */ 0, DiffOptions.DEFAULTS);
+      CommitContext ctx, ImmutableCollection<Pattern> blockedKeywordPatterns, PluginConfig cfg)
+      throws CommitValidationException {
+    return ValidationEngine.validate(ctx, new Rule(blockedKeywordPatterns, cfg));
+  }
 
-    for (String path : content.keySet()) {
-      ObjectLoader ol = revWalk.getObjectReader().open(content.get(path));
-      try (InputStream in = ol.openStream()) {
-        if (RawText.isBinary(in) || contentTypeUtil.isForbiddenBinaryContentType(ol, path, cfg)) {
-          continue;
-        }
+  private class Rule implements ValidationRule {
+    private final KeywordMatcher keywordMatcher;
+    private final PluginConfig cfg;
+
+    Rule(ImmutableCollection<Pattern> blockedKeywordPatterns, PluginConfig cfg) {
+      this.keywordMatcher = new KeywordMatcher(blockedKeywordPatterns);
+      this.cfg = cfg;
+    }
+
+    @Override
+    public String getRejectReason() {
+      return "includes files containing blocked keywords";
+    }
+
+    @Override
+    public String getErrorReason() {
+      return "failed to check on blocked keywords";
+    }
+
+    @Override
+    public boolean inspectsContent() {
+      return true;
+    }
+
+    @Override
+    public String getContentCheckKey(CommitContext ctx, ChangedEntry entry)
+        throws DiffNotAvailableException {
+      FileDiffOutput fileDiff = ctx.getModifiedFiles(diffOperations).get(entry.getPath());
+      return fileDiff != null ? ValidationResultCache.editedLines(fileDiff) : null;
+    }
+
+    @Override
+    public void checkCommit(CommitContext ctx, List<CommitValidationMessage> messages) {
+      checkCommitMessageForBlockedKeywords(
+          keywordMatcher, messages, ctx.getCommit().getFullMessage());
+    }
+
+    @Override
+    public void checkContent(
+        CommitContext ctx,
+        ChangedEntry entry,
+        ObjectLoader ol,
+        List<CommitValidationMessage> messages)
+        throws IOException, ExecutionException, DiffNotAvailableException {
+      String path = entry.getPath();
+      FileDiffOutput fileDiff = ctx.getModifiedFiles(diffOperations).get(path);
+      if (fileDiff == null) {
+        return;
       }
-      if (!fileDiffs.containsKey(path)) {
-        continue;
+      if (contentTypeUtil.isBinary(entry.getObjectId(), ol, path, cfg)) {
+        return;
       }
       checkLineDiffForBlockedKeywords(
-          fileDiffs.get(path).edits().stream()
-              .map(TaggedEdit::jgitEdit)
-              .collect(Collectors.toList()),
-          blockedKeywordPatterns,
+          fileDiff.edits().stream().map(TaggedEdit::jgitEdit).collect(Collectors.toList()),
+          keywordMatcher,
           messages,
           path,
-          ol);
+          ol,
+          ctx.getDeadline());
     }
-    return messages;
   }
 
   private static Optional<CommentValidationFailure> validateComment(
-      ImmutableMap<String, Pattern> blockedKeywordPatterns, CommentForValidation comment) {
+      KeywordMatcher keywordMatcher, CommentForValidation comment) {
     // Uses HashSet data structure for de-duping found blocked keywords.
-    Set<String> findings =
-        new LinkedHashSet<String>(
-            findBlockedKeywordsInString(blockedKeywordPatterns.values(), comment.getText()));
+    Set<String> findings = new LinkedHashSet<String>(keywordMatcher.find(comment.getText()));
     if (findings.isEmpty()) {
       return Optional.empty();
     }
@@ -273,56 +254,54 @@ public class BlockedKeywordValidator implements CommitValidationListener, Commen
   }
 
   private static void checkCommitMessageForBlockedKeywords(
-      ImmutableCollection<Pattern> blockedKeywordPatterns,
-      List<CommitValidationMessage> messages,
-      String commitMessage) {
+      KeywordMatcher keywordMatcher, List<CommitValidationMessage> messages, String commitMessage) {
     int line = 0;
     for (String l : commitMessage.split("[\r\n]+")) {
       line++;
-      checkLineForBlockedKeywords(blockedKeywordPatterns, messages, Patch.COMMIT_MSG, line, l);
+      checkLineForBlockedKeywords(keywordMatcher, messages, Patch.COMMIT_MSG, line, l);
     }
   }
 
   private static void checkLineDiffForBlockedKeywords(
       List<Edit> edits,
-      ImmutableCollection<Pattern> blockedKeywordPatterns,
+      KeywordMatcher keywordMatcher,
       List<CommitValidationMessage> messages,
       String path,
-      ObjectLoader ol)
+      ObjectLoader ol,
+      Deadline deadline)
       throws IOException {
-    List<String> lines = new ArrayList<>();
-    try (BufferedReader br =
-        new BufferedReader(new InputStreamReader(ol.openStream(), StandardCharsets.UTF_8))) {
-      for (String l = br.readLine(); l != null; l = br.readLine()) {
-        lines.add(l);
-      }
-    }
-    for (Edit edit : edits) {
-      for (int i = edit.getBeginB(); i < edit.getEndB(); i++) {
-        checkLineForBlockedKeywords(blockedKeywordPatterns, messages, path, i + 1, lines.get(i));
-      }
-    }
-  }
-
-  private static List<String> findBlockedKeywordsInString(
-      ImmutableCollection<Pattern> blockedKeywordPatterns, String text) {
-    List<String> found = new ArrayList<>();
-    for (Pattern p : blockedKeywordPatterns) {
-      Matcher matcher = p.matcher(text);
-      while (matcher.find()) {
-        found.add(matcher.group());
+    List<Edit> sorted = new ArrayList<>(edits);
+    sorted.sort(Comparator.comparingInt(Edit::getBeginB));
+    try (LineCursor lines = new LineCursor(ol.openStream())) {
+      for (Edit edit : sorted) {
+        if (!lines.skipTo(edit.getBeginB())) {
+          return;
+        }
+        for (int i = edit.getBeginB(); i < edit.getEndB(); i++) {
+          String line = lines.nextLine();
+          if (line == null) {
+            return;
+          }
+          deadline.check();
+          try {
+            // A slow regular expression on a long line is stopped at the deadline as well.
+            checkLineForBlockedKeywords(keywordMatcher, messages, path, i + 1, deadline.wrap(line));
+          } catch (UncheckedIOException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), Deadline.ExceededException.class);
+            throw e;
+          }
+        }
       }
     }
-    return found;
   }
 
   private static void checkLineForBlockedKeywords(
-      ImmutableCollection<Pattern> blockedKeywordPatterns,
+      KeywordMatcher keywordMatcher,
       List<CommitValidationMessage> messages,
       String path,
       int lineNumber,
-      String line) {
-    List<String> found = findBlockedKeywordsInString(blockedKeywordPatterns, line);
+      CharSequence line) {
+    List<String> found = keywordMatcher.find(line);
     if (!found.isEmpty()) {
       messages.add(
           new CommitValidationMessage(
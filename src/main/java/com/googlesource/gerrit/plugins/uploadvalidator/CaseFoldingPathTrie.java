@@ -0,0 +1,124 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.gerrit.common.Nullable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Trie of pathnames which are case-folded component by component.
+ *
+ * <p>Every component is folded once and stored once, no matter how many paths share it. A node
+ * remembers the original spelling of the first path which was inserted through it, as a prefix of
+ * that path, so that no substrings of the paths have to be kept.
+ */
+class CaseFoldingPathTrie {
+
+  /** A folded path prefix, i.e. a folder or a file. */
+  static class Node {
+    private final String path;
+    private final int end;
+    private Map<String, Node> children;
+    private Set<String> variants;
+
+    private Node(String path, int end) {
+      this.path = path;
+      this.end = end;
+    }
+
+    /** @return the original spelling of the prefix. */
+    String getPath() {
+      return path.substring(0, end);
+    }
+
+    /** @return whether the prefix is spelled exactly like the passed path. */
+    boolean hasPath(String other) {
+      return hasPrefixOf(other, other.length());
+    }
+
+    private boolean hasPrefixOf(String other, int otherEnd) {
+      return end == otherEnd && path.regionMatches(0, other, 0, end);
+    }
+
+    /** @return the child with the passed folded name, or {@code null}. */
+    @Nullable
+    Node getChild(String foldedName) {
+      return children != null ? children.get(foldedName) : null;
+    }
+
+    /** @return the children by their folded name, in the order in which they were inserted. */
+    Map<String, Node> getChildren() {
+      return children != null ? Collections.unmodifiableMap(children) : Collections.emptyMap();
+    }
+  }
+
+  private final Locale locale;
+  private final Node root = new Node("", 0);
+
+  CaseFoldingPathTrie(Locale locale) {
+    this.locale = locale;
+  }
+
+  Node getRoot() {
+    return root;
+  }
+
+  String fold(String name) {
+    return name.toLowerCase(locale);
+  }
+
+  /**
+   * Inserts a path and all its folders.
+   *
+   * @param onConflict called with the original spelling of an already inserted prefix and the
+   *     spelling of the inserted path, for every folder or file of the path which only differs in
+   *     case. Every spelling is reported once.
+   */
+  void insert(String path, BiConsumer<String, String> onConflict) {
+    Node node = root;
+    int start = 0;
+    while (start <= path.length()) {
+      int end = path.indexOf('/', start);
+      if (end < 0) {
+        end = path.length();
+      }
+      String name = fold(path.substring(start, end));
+      if (node.children == null) {
+        node.children = new LinkedHashMap<>();
+      }
+      Node child = node.children.get(name);
+      if (child == null) {
+        child = new Node(path, end);
+        node.children.put(name, child);
+      } else if (!child.hasPrefixOf(path, end)) {
+        String prefix = path.substring(0, end);
+        if (child.variants == null) {
+          child.variants = new HashSet<>();
+        }
+        if (child.variants.add(prefix)) {
+          onConflict.accept(child.getPath(), prefix);
+        }
+      }
+      node = child;
+      start = end + 1;
+    }
+  }
+}
@@ -32,6 +32,7 @@ import com.google.inject.Inject;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
 public class ChangeEmailValidator implements CommitValidationListener {
@@ -94,16 +95,16 @@ public class ChangeEmailValidator implements CommitValidationListener {
   public static final String KEY_REJECTED_COMMITTER_EMAIL_PATTERN = "rejectedCommitterEmailPattern";
   private final String pluginName;
   private final PluginConfigFactory cfgFactory;
-  private final ValidatorConfig validatorConfig;
+  private final ValidationPlanCache planCache;
 
   @Inject
   ChangeEmailValidator(
       @PluginName String pluginName,
       PluginConfigFactory cfgFactory,
-      ValidatorConfig validatorConfig) {
+      ValidationPlanCache planCache) {
     this.pluginName = pluginName;
     this.cfgFactory = cfgFactory;
-    this.validatorConfig = validatorConfig;
+    this.planCache = planCache;
   }
 
   @VisibleForTesting
@@ -153,10 +154,11 @@ public class ChangeEmailValidator implements CommitValidationListener {
       PluginConfig cfg =
           cfgFactory.getFromProjectConfigWithInheritance(
               receiveEvent.project.getNameKey(), pluginName);
+      // The enablement settings are compiled once per config and decided once per push.
+      ValidationPlan plan = planCache.get(receiveEvent.getProjectNameKey());
       if (isAuthorAllowListActive(cfg)
-          && validatorConfig.isEnabled(
+          && plan.isEnabled(
               receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
               receiveEvent.getRefName(),
               KEY_ALLOWED_AUTHOR_EMAIL_PATTERN,
               receiveEvent.pushOptions)) {
@@ -170,9 +172,8 @@ public class ChangeEmailValidator implements CommitValidationListener {
         }
       }
       if (isAuthorRejectListActive(cfg)
-          && validatorConfig.isEnabled(
+          && plan.isEnabled(
               receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
               receiveEvent.getRefName(),
               KEY_REJECTED_AUTHOR_EMAIL_PATTERN,
               receiveEvent.pushOptions)) {
@@ -186,9 +187,8 @@ public class ChangeEmailValidator implements CommitValidationListener {
         }
       }
       if (isCommitterAllowListActive(cfg)
-          && validatorConfig.isEnabled(
+          && plan.isEnabled(
               receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
               receiveEvent.getRefName(),
               KEY_ALLOWED_COMMITTER_EMAIL_PATTERN,
               receiveEvent.pushOptions)) {
@@ -202,9 +202,8 @@ public class ChangeEmailValidator implements CommitValidationListener {
         }
       }
       if (isCommitterRejectListActive(cfg)
-          && validatorConfig.isEnabled(
+          && plan.isEnabled(
               receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
               receiveEvent.getRefName(),
               KEY_REJECTED_COMMITTER_EMAIL_PATTERN,
               receiveEvent.pushOptions)) {
@@ -217,7 +216,7 @@ public class ChangeEmailValidator implements CommitValidationListener {
                   + "> - is not allowed for this Project.");
         }
       }
-    } catch (NoSuchProjectException e) {
+    } catch (NoSuchProjectException | ExecutionException e) {
       throw new CommitValidationException("Failed to check for Change Email Patterns ", e);
     }
     return Collections.emptyList();
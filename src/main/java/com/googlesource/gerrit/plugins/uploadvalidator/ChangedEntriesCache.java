@@ -0,0 +1,88 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Holds the changed entries snapshot of recently received commits, so that the tree diff of a
+ * commit against its parents is computed once per {@code CommitReceivedEvent} instead of once per
+ * validator.
+ *
+ * <p>A commit's changed entries only depend on the commit's tree and the trees of its parents,
+ * hence they can safely be keyed by the commit ObjectId. Entries expire shortly after they have
+ * been computed, as they are only needed while the commit is validated.
+ */
+@Singleton
+public class ChangedEntriesCache {
+  static final String CACHE_NAME = "changedEntries";
+
+  public static CacheModule module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, ObjectId.class, new TypeLiteral<ImmutableList<ChangedEntry>>() {})
+            .maximumWeight(200_000)
+            .weigher(EntryCountWeigher.class)
+            .expireAfterWrite(Duration.ofMinutes(5));
+        bind(ChangedEntriesCache.class);
+      }
+    };
+  }
+
+  static class EntryCountWeigher implements Weigher<ObjectId, ImmutableList<ChangedEntry>> {
+    @Override
+    public int weigh(ObjectId key, ImmutableList<ChangedEntry> value) {
+      return 1 + value.size();
+    }
+  }
+
+  private final Cache<ObjectId, ImmutableList<ChangedEntry>> cache;
+
+  @Inject
+  ChangedEntriesCache(@Named(CACHE_NAME) Cache<ObjectId, ImmutableList<ChangedEntry>> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Returns the changed entries of the passed commit, computing them with {@link
+   * CommitUtils#getChangedEntries(Repository, RevCommit, RevWalk)} if they are not cached yet.
+   */
+  public ImmutableList<ChangedEntry> get(Repository repo, RevCommit c, RevWalk revWalk)
+      throws IOException {
+    try {
+      // Copy the id, a RevCommit key would retain the whole RevWalk graph.
+      return cache.get(c.copy(), () -> CommitUtils.getChangedEntries(repo, c, revWalk));
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      throw new IOException(e.getCause());
+    }
+  }
+}
@@ -0,0 +1,107 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Immutable snapshot of a single TreeWalk entry which differs between a commit and all of its
+ * parents.
+ *
+ * <p>Tree 0 of the walk is the commit itself, trees 1..n are its parents.
+ */
+public final class ChangedEntry {
+  private final String path;
+  private final int rawMode;
+  private final ObjectId objectId;
+  private final int[] parentRawModes;
+  private final ObjectId[] parentObjectIds;
+
+  static ChangedEntry fromTreeWalk(TreeWalk tw) {
+    int parents = tw.getTreeCount() - 1;
+    int[] parentRawModes = new int[parents];
+    ObjectId[] parentObjectIds = new ObjectId[parents];
+    for (int p = 0; p < parents; p++) {
+      parentRawModes[p] = tw.getRawMode(p + 1);
+      parentObjectIds[p] = tw.getObjectId(p + 1);
+    }
+    return new ChangedEntry(
+        tw.getPathString(), tw.getRawMode(0), tw.getObjectId(0), parentRawModes, parentObjectIds);
+  }
+
+  ChangedEntry(
+      String path,
+      int rawMode,
+      ObjectId objectId,
+      int[] parentRawModes,
+      ObjectId[] parentObjectIds) {
+    this.path = path;
+    this.rawMode = rawMode;
+    this.objectId = objectId;
+    this.parentRawModes = parentRawModes;
+    this.parentObjectIds = parentObjectIds;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public int getRawMode() {
+    return rawMode;
+  }
+
+  public ObjectId getObjectId() {
+    return objectId;
+  }
+
+  public int getParentCount() {
+    return parentRawModes.length;
+  }
+
+  /** @param parent zero based index of the parent, as in {@code RevCommit.getParent(int)}. */
+  public int getParentRawMode(int parent) {
+    return parentRawModes[parent];
+  }
+
+  /** @param parent zero based index of the parent, as in {@code RevCommit.getParent(int)}. */
+  public ObjectId getParentObjectId(int parent) {
+    return parentObjectIds[parent];
+  }
+
+  /** Whether the entry is a regular or an executable file. */
+  public boolean isFile() {
+    return FileMode.EXECUTABLE_FILE.equals(rawMode) || FileMode.REGULAR_FILE.equals(rawMode);
+  }
+
+  public boolean isSymlink() {
+    return (rawMode & FileMode.TYPE_MASK) == FileMode.TYPE_SYMLINK;
+  }
+
+  public boolean isSubmodule() {
+    return (rawMode & FileMode.TYPE_MASK) == FileMode.TYPE_GITLINK;
+  }
+
+  /** Whether the entry does not exist in the commit, but in at least one of its parents. */
+  public boolean isDeleted() {
+    return FileMode.MISSING.equals(rawMode);
+  }
+
+  @Override
+  public String toString() {
+    return path + " (" + objectId.name() + ")";
+  }
+}
@@ -0,0 +1,180 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.patch.DiffNotAvailableException;
+import com.google.gerrit.server.patch.DiffOperations;
+import com.google.gerrit.server.patch.DiffOptions;
+import com.google.gerrit.server.patch.filediff.FileDiffOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * The commit which is validated by the {@link ValidationEngine}, shared by all its rules.
+ *
+ * <p>The changed files of a commit may be validated by several threads. The {@link RevWalk} and its
+ * reader must only be used by the receive thread, the content checks open files with the reader
+ * passed by the engine.
+ */
+public class CommitContext {
+  private final Project.NameKey project;
+  private final Repository repo;
+  private final RevWalk revWalk;
+  private final RevCommit commit;
+  private final ImmutableList<ChangedEntry> entries;
+  private final BlobContentCache blobContentCache;
+  private final ValidationMetrics metrics;
+  private final LongAdder[] phaseNanos;
+
+  private Map<String, FileDiffOutput> modifiedFiles;
+  private long[] ruleNanos;
+  private long[] entryNanos;
+  private Deadline deadline = Deadline.NONE;
+
+  public CommitContext(
+      Project.NameKey project,
+      Repository repo,
+      RevWalk revWalk,
+      RevCommit commit,
+      ImmutableList<ChangedEntry> entries,
+      BlobContentCache blobContentCache,
+      ValidationMetrics metrics) {
+    this.project = project;
+    this.repo = repo;
+    this.revWalk = revWalk;
+    this.commit = commit;
+    this.entries = entries;
+    this.blobContentCache = blobContentCache;
+    this.metrics = metrics;
+    this.phaseNanos = new LongAdder[ValidationMetrics.Phase.values().length];
+    for (int i = 0; i < phaseNanos.length; i++) {
+      phaseNanos[i] = new LongAdder();
+    }
+  }
+
+  public Project.NameKey getProject() {
+    return project;
+  }
+
+  public Repository getRepository() {
+    return repo;
+  }
+
+  public RevWalk getRevWalk() {
+    return revWalk;
+  }
+
+  public ObjectReader getObjectReader() {
+    return revWalk.getObjectReader();
+  }
+
+  public RevCommit getCommit() {
+    return commit;
+  }
+
+  public ImmutableList<ChangedEntry> getEntries() {
+    return entries;
+  }
+
+  /** Opens the content of a changed file, see {@link BlobContentCache#open}. */
+  public ObjectLoader open(ChangedEntry entry) throws IOException {
+    return open(getObjectReader(), entry);
+  }
+
+  /** Opens the content of a changed file with the reader of the calling thread. */
+  public ObjectLoader open(ObjectReader reader, ChangedEntry entry) throws IOException {
+    long start = System.nanoTime();
+    ObjectLoader ol = blobContentCache.open(reader, entry.getObjectId());
+    recordPhase(ValidationMetrics.Phase.BLOB_READ, System.nanoTime() - start);
+    metrics.recordFile(ol.getSize());
+    return ol;
+  }
+
+  /**
+   * Returns the files modified against the first parent, with their edits. The diff is computed
+   * once and shared by all rules which need it.
+   */
+  public synchronized Map<String, FileDiffOutput> getModifiedFiles(DiffOperations diffOperations)
+      throws DiffNotAvailableException {
+    if (modifiedFiles == null) {
+      long start = System.nanoTime();
+      modifiedFiles =
+          diffOperations.listModifiedFilesAgainstParent(
+              project, commit, /* parentNum= */ 0, DiffOptions.DEFAULTS);
+      recordPhase(ValidationMetrics.Phase.DIFF_FETCH, System.nanoTime() - start);
+    }
+    return modifiedFiles;
+  }
+
+  /**
+   * @return the time in nanoseconds each of the rules spent on the commit, in the order of the
+   *     rules passed to {@link ValidationEngine#validate}, or {@code null} if it didn't validate
+   *     the commit yet.
+   */
+  @Nullable
+  long[] getRuleNanos() {
+    return ruleNanos;
+  }
+
+  void setRuleNanos(long[] ruleNanos) {
+    this.ruleNanos = ruleNanos;
+  }
+
+  /** Reports time spent in a phase of the validation of the commit. */
+  void recordPhase(ValidationMetrics.Phase phase, long nanos) {
+    metrics.recordPhase(phase, nanos);
+    phaseNanos[phase.ordinal()].add(nanos);
+  }
+
+  /** @return the time in nanoseconds spent in a phase of the validation of the commit. */
+  long getPhaseNanos(ValidationMetrics.Phase phase) {
+    return phaseNanos[phase.ordinal()].sum();
+  }
+
+  /**
+   * @return the deadline of the validation of the commit, which rules which scan large contents
+   *     check in their scan loops.
+   */
+  Deadline getDeadline() {
+    return deadline;
+  }
+
+  void setDeadline(Deadline deadline) {
+    this.deadline = deadline;
+  }
+
+  /** Makes the engine measure the time spent on each of the changed entries. */
+  void traceEntries() {
+    entryNanos = new long[entries.size()];
+  }
+
+  /**
+   * @return the time in nanoseconds the rules spent on each of the changed entries, or {@code null}
+   *     if the entries are not traced.
+   */
+  @Nullable
+  long[] getEntryNanos() {
+    return entryNanos;
+  }
+}
@@ -14,11 +14,12 @@
 
 package com.googlesource.gerrit.plugins.uploadvalidator;
 
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -63,7 +64,50 @@ public class CommitUtils {
    */
   public static Map<String, ObjectId> getChangedContent(
       Repository repo, RevCommit c, RevWalk revWalk) throws IOException {
-    final Map<String, ObjectId> content = new HashMap<>();
+    return getChangedContent(getChangedEntries(repo, c, revWalk));
+  }
+
+  /**
+   * Returns the files of a changed entries snapshot as a Map from path to ObjectId, like {@link
+   * #getChangedContent(Repository, RevCommit, RevWalk)}.
+   *
+   * @param entries The changed entries of a commit
+   * @return A Map containing all files of the snapshot.
+   */
+  public static Map<String, ObjectId> getChangedContent(List<ChangedEntry> entries) {
+    Map<String, ObjectId> content = new LinkedHashMap<>();
+    for (ChangedEntry entry : entries) {
+      if (entry.isFile()) {
+        content.put(entry.getPath(), entry.getObjectId());
+      }
+    }
+    return content;
+  }
+
+  /**
+   * Returns the paths of all files of a changed entries snapshot, like {@link
+   * #getChangedPaths(Repository, RevCommit, RevWalk)}.
+   *
+   * @param entries The changed entries of a commit
+   * @return A Set containing the paths of all files of the snapshot.
+   */
+  public static Set<String> getChangedPaths(List<ChangedEntry> entries) {
+    return getChangedContent(entries).keySet();
+  }
+
+  /**
+   * This method spots all TreeWalk entries which differ between the passed commit and its parents
+   * and takes an immutable snapshot of them, so that the result can be shared by all validators
+   * which are run on the commit.
+   *
+   * @param repo The repository
+   * @param c The commit
+   * @return The changed entries in TreeWalk order, including deleted entries.
+   * @throws IOException
+   */
+  public static ImmutableList<ChangedEntry> getChangedEntries(
+      Repository repo, RevCommit c, RevWalk revWalk) throws IOException {
+    final ImmutableList.Builder<ChangedEntry> entries = ImmutableList.builder();
 
     visitChangedEntries(
         repo,
@@ -72,17 +116,10 @@ public class CommitUtils {
         new TreeWalkVisitor() {
           @Override
           public void onVisit(TreeWalk tw) {
-            if (isFile(tw)) {
-              content.put(tw.getPathString(), tw.getObjectId(0));
-            }
+            entries.add(ChangedEntry.fromTreeWalk(tw));
           }
         });
-    return content;
-  }
-
-  private static boolean isFile(TreeWalk tw) {
-    return FileMode.EXECUTABLE_FILE.equals(tw.getRawMode(0))
-        || FileMode.REGULAR_FILE.equals(tw.getRawMode(0));
+    return entries.build();
   }
 
   /**
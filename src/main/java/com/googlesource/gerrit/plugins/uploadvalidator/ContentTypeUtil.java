@@ -17,31 +17,56 @@ package com.googlesource.gerrit.plugins.uploadvalidator;
 import static com.googlesource.gerrit.plugins.uploadvalidator.PatternCacheModule.CACHE_NAME;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.LoadingCache;
+import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.extensions.annotations.Exports;
+import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.api.projects.ProjectConfigEntryType;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.serialize.StringCacheSerializer;
 import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.ProjectConfigEntry;
-import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import com.google.inject.Scopes;
 import com.google.inject.name.Named;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.overviewproject.mime_types.GetBytesException;
 import org.overviewproject.mime_types.MimeTypeDetector;
 
 public class ContentTypeUtil {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
   private static final String KEY_BINARY_TYPES = "binaryTypes";
+  private static final String KEY_CONTENT_PREFIX_SIZE = "contentPrefixSize";
+  static final int DEFAULT_CONTENT_PREFIX_SIZE = 8 * 1024;
+  static final String CONTENT_TYPE_CACHE = "contentType";
 
-  public static AbstractModule module() {
-    return new AbstractModule() {
+  public static CacheModule module() {
+    return new CacheModule() {
 
       @Override
       protected void configure() {
+        // The detected content type only depends on the blob content, the length of the prefix
+        // which is read and the file name. All are part of the key, so entries never need to be
+        // invalidated.
+        persist(CONTENT_TYPE_CACHE, String.class, String.class)
+            .version(1)
+            .maximumWeight(100_000)
+            .diskLimit(64 * 1024 * 1024)
+            .keySerializer(StringCacheSerializer.INSTANCE)
+            .valueSerializer(StringCacheSerializer.INSTANCE);
         bind(ContentTypeUtil.class).in(Scopes.SINGLETON);
         bind(ProjectConfigEntry.class)
             .annotatedWith(Exports.named(KEY_BINARY_TYPES))
@@ -66,33 +91,106 @@ public class ContentTypeUtil {
     return cfg.getStringList(KEY_BINARY_TYPES);
   }
 
+  /** @return the configured prefix size, or the default if the configured size is not positive. */
+  @VisibleForTesting
+  static int getContentPrefixSize(PluginConfig cfg) {
+    int size = cfg.getInt(KEY_CONTENT_PREFIX_SIZE, DEFAULT_CONTENT_PREFIX_SIZE);
+    if (size < 1) {
+      logger.atWarning().log(
+          "invalid %s %d, using %d", KEY_CONTENT_PREFIX_SIZE, size, DEFAULT_CONTENT_PREFIX_SIZE);
+      return DEFAULT_CONTENT_PREFIX_SIZE;
+    }
+    return size;
+  }
+
   private final LoadingCache<String, Pattern> patternCache;
+  private final Cache<String, String> contentTypeCache;
+  private final int contentPrefixSize;
   private final MimeTypeDetector detector = new MimeTypeDetector();
 
   @Inject
-  ContentTypeUtil(@Named(CACHE_NAME) LoadingCache<String, Pattern> patternCache) {
+  ContentTypeUtil(
+      @Named(CACHE_NAME) LoadingCache<String, Pattern> patternCache,
+      @Named(CONTENT_TYPE_CACHE) Cache<String, String> contentTypeCache,
+      PluginConfigFactory cfgFactory,
+      @PluginName String pluginName) {
+    this(
+        patternCache,
+        contentTypeCache,
+        getContentPrefixSize(cfgFactory.getFromGerritConfig(pluginName)));
+  }
+
+  @VisibleForTesting
+  ContentTypeUtil(
+      LoadingCache<String, Pattern> patternCache,
+      Cache<String, String> contentTypeCache,
+      int contentPrefixSize) {
     this.patternCache = patternCache;
+    this.contentTypeCache = contentTypeCache;
+    this.contentPrefixSize = contentPrefixSize;
   }
 
-  public boolean isForbiddenBinaryContentType(ObjectLoader ol, String pathname, PluginConfig cfg)
+  /**
+   * Checks whether a blob is binary, either because its content looks binary or because it has one
+   * of the configured binary content types. Only a prefix of the blob is inflated for that.
+   */
+  public boolean isBinary(ObjectId blobId, ObjectLoader ol, String pathname, PluginConfig cfg)
       throws IOException, ExecutionException {
-    try (InputStream is = ol.openStream()) {
-      String[] types = getBinaryTypes(cfg);
-      if (types.length > 0) {
-        return matchesAny(getContentType(is, pathname), types);
-      }
+    byte[] prefix = readPrefix(ol);
+    if (RawText.isBinary(prefix, prefix.length, prefix.length == ol.getSize())) {
+      return true;
+    }
+    String[] types = getBinaryTypes(cfg);
+    if (types.length > 0) {
+      return matchesAny(getContentType(blobId, () -> prefix, pathname), types);
     }
     return false;
   }
 
-  public String getContentType(InputStream is, String pathname) throws IOException {
+  /**
+   * Returns the content type of a blob. The type is detected once per blob, prefix size and file
+   * name, and cached across pushes. Only a prefix of the blob is inflated for the detection.
+   */
+  public String getContentType(ObjectId blobId, ObjectLoader ol, String pathname)
+      throws IOException {
+    return getContentType(blobId, () -> readPrefix(ol), pathname);
+  }
+
+  private String getContentType(ObjectId blobId, Callable<byte[]> prefix, String pathname)
+      throws IOException {
+    String fileName = pathname.substring(pathname.lastIndexOf('/') + 1);
+    try {
+      return contentTypeCache.get(
+          blobId.name() + ':' + contentPrefixSize + ':' + fileName,
+          () -> detectContentType(prefix.call(), fileName));
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private String detectContentType(byte[] prefix, String fileName) throws IOException {
     try {
-      return detector.detectMimeType(pathname, is);
+      return detector.detectMimeType(fileName, new ByteArrayInputStream(prefix));
     } catch (GetBytesException e) {
       throw new IOException(e);
     }
   }
 
+  /** @return the first {@code contentPrefixSize} bytes of the blob. */
+  @VisibleForTesting
+  byte[] readPrefix(ObjectLoader ol) throws IOException {
+    if (!ol.isLarge()) {
+      byte[] content = ol.getCachedBytes();
+      return content.length <= contentPrefixSize
+          ? content
+          : Arrays.copyOf(content, contentPrefixSize);
+    }
+    try (InputStream is = ol.openStream()) {
+      return is.readNBytes(contentPrefixSize);
+    }
+  }
+
   @VisibleForTesting
   boolean matchesAny(String s, String[] patterns) throws ExecutionException {
     for (String p : patterns) {
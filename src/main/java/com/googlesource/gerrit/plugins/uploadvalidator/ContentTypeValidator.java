@@ -16,41 +16,27 @@ package com.googlesource.gerrit.plugins.uploadvalidator;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.gerrit.extensions.annotations.Exports;
-import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.api.projects.ProjectConfigEntryType;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.server.config.PluginConfig;
-import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.ProjectConfigEntry;
-import com.google.gerrit.server.events.CommitReceivedEvent;
-import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.validators.CommitValidationException;
-import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
-import com.google.gerrit.server.project.NoSuchProjectException;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
-import org.eclipse.jgit.lib.ObjectStream;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 
-public class ContentTypeValidator implements CommitValidationListener {
+public class ContentTypeValidator implements ValidationRule.Factory {
 
   public static AbstractModule module() {
     return new AbstractModule() {
 
       @Override
       protected void configure() {
-        DynamicSet.bind(binder(), CommitValidationListener.class).to(ContentTypeValidator.class);
+        DynamicSet.bind(binder(), ValidationRule.Factory.class).to(ContentTypeValidator.class);
         bind(ProjectConfigEntry.class)
             .annotatedWith(Exports.named(KEY_BLOCKED_CONTENT_TYPE))
             .toInstance(
@@ -95,77 +81,75 @@ public class ContentTypeValidator implements CommitValidationListener {
     return cfg.getStringList(KEY_BLOCKED_CONTENT_TYPE);
   }
 
-  private final String pluginName;
-  private final PluginConfigFactory cfgFactory;
-  private final GitRepositoryManager repoManager;
   private final ContentTypeUtil contentTypeUtil;
-  private final ValidatorConfig validatorConfig;
 
   @Inject
-  ContentTypeValidator(
-      @PluginName String pluginName,
-      ContentTypeUtil contentTypeUtil,
-      PluginConfigFactory cfgFactory,
-      GitRepositoryManager repoManager,
-      ValidatorConfig validatorConfig) {
-    this.pluginName = pluginName;
+  ContentTypeValidator(ContentTypeUtil contentTypeUtil) {
     this.contentTypeUtil = contentTypeUtil;
-    this.cfgFactory = cfgFactory;
-    this.repoManager = repoManager;
-    this.validatorConfig = validatorConfig;
   }
 
   @Override
-  public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
-      throws CommitValidationException {
-    try {
-      PluginConfig cfg =
-          cfgFactory.getFromProjectConfigWithInheritance(
-              receiveEvent.project.getNameKey(), pluginName);
-      if (isActive(cfg)
-          && validatorConfig.isEnabled(
-              receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
-              receiveEvent.getRefName(),
-              KEY_BLOCKED_CONTENT_TYPE,
-              receiveEvent.pushOptions)) {
-        try (Repository repo = repoManager.openRepository(receiveEvent.project.getNameKey())) {
-          List<CommitValidationMessage> messages =
-              performValidation(
-                  repo,
-                  receiveEvent.commit,
-                  receiveEvent.revWalk,
-                  getBlockedTypes(cfg),
-                  isAllowList(cfg));
-          if (!messages.isEmpty()) {
-            throw new CommitValidationException("contains blocked content type", messages);
-          }
-        }
-      }
-    } catch (NoSuchProjectException | IOException | ExecutionException e) {
-      throw new CommitValidationException("failed to check on content type", e);
-    }
-    return Collections.emptyList();
+  public String getValidatorOp() {
+    return KEY_BLOCKED_CONTENT_TYPE;
+  }
+
+  @Override
+  public ValidationRule create(PluginConfig cfg) {
+    return isActive(cfg) ? new Rule(getBlockedTypes(cfg), isAllowList(cfg)) : null;
   }
 
   @VisibleForTesting
   List<CommitValidationMessage> performValidation(
-      Repository repo, RevCommit c, RevWalk revWalk, String[] blockedTypes, boolean allowList)
-      throws IOException, ExecutionException {
-    List<CommitValidationMessage> messages = new LinkedList<>();
-    Map<String, ObjectId> content = CommitUtils.getChangedContent(repo, c, revWalk);
-    for (String path : content.keySet()) {
-      ObjectLoader ol = repo.open(content.get(path));
-      try (ObjectStream os = ol.openStream()) {
-        String contentType = contentTypeUtil.getContentType(os, path);
-        if ((contentTypeUtil.matchesAny(contentType, blockedTypes) && !allowList)
-            || (!contentTypeUtil.matchesAny(contentType, blockedTypes) && allowList)) {
-          messages.add(
-              new CommitValidationMessage(
-                  "found blocked content type (" + contentType + ") in file: " + path, true));
-        }
+      CommitContext ctx, String[] blockedTypes, boolean allowList)
+      throws CommitValidationException {
+    return ValidationEngine.validate(ctx, new Rule(blockedTypes, allowList));
+  }
+
+  private class Rule implements ValidationRule {
+    private final String[] blockedTypes;
+    private final boolean allowList;
+
+    Rule(String[] blockedTypes, boolean allowList) {
+      this.blockedTypes = blockedTypes;
+      this.allowList = allowList;
+    }
+
+    @Override
+    public String getRejectReason() {
+      return "contains blocked content type";
+    }
+
+    @Override
+    public String getErrorReason() {
+      return "failed to check on content type";
+    }
+
+    @Override
+    public boolean inspectsContent() {
+      return true;
+    }
+
+    @Override
+    public String getContentCheckKey(CommitContext ctx, ChangedEntry entry) {
+      // The content type only depends on the path and the content of the file.
+      return "";
+    }
+
+    @Override
+    public void checkContent(
+        CommitContext ctx,
+        ChangedEntry entry,
+        ObjectLoader ol,
+        List<CommitValidationMessage> messages)
+        throws IOException, ExecutionException {
+      String path = entry.getPath();
+      String contentType = contentTypeUtil.getContentType(entry.getObjectId(), ol, path);
+      if ((contentTypeUtil.matchesAny(contentType, blockedTypes) && !allowList)
+          || (!contentTypeUtil.matchesAny(contentType, blockedTypes) && allowList)) {
+        messages.add(
+            new CommitValidationMessage(
+                "found blocked content type (" + contentType + ") in file: " + path, true));
       }
     }
-    return messages;
   }
 }
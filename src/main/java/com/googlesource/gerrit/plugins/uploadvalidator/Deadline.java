@@ -0,0 +1,117 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Wall-clock deadline of the validation of a commit, see {@link TimeBudget}.
+ *
+ * <p>The deadline is checked cooperatively: the {@link ValidationEngine} checks it before every
+ * changed entry, and the rules which scan the content of files check it in their scan loops. Once a
+ * check found the deadline to be exceeded, the deadline stays expired, so that all threads which
+ * validate the commit stop.
+ */
+class Deadline {
+  /** Deadline which is never exceeded. */
+  static final Deadline NONE = new Deadline(0, Long.MAX_VALUE);
+
+  /** Thrown by a check which found the deadline to be exceeded. */
+  static class ExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    ExceededException() {
+      super("deadline of the validation exceeded");
+    }
+  }
+
+  /** Number of characters after which {@link #wrap wrapped text} checks the deadline again. */
+  private static final int CHARS_PER_CHECK = 4096;
+
+  private final long start;
+  private final long budget;
+  private volatile boolean expired;
+
+  /**
+   * @param start the start of the validation in {@link System#nanoTime()}.
+   * @param budget the time in nanoseconds the validation may take.
+   */
+  Deadline(long start, long budget) {
+    this.start = start;
+    this.budget = budget;
+  }
+
+  /** @return whether the deadline is exceeded. */
+  boolean isExceeded() {
+    if (!expired && this != NONE && System.nanoTime() - start >= budget) {
+      expired = true;
+    }
+    return expired;
+  }
+
+  /** @return whether one of the checks found the deadline to be exceeded. */
+  boolean hasExpired() {
+    return expired;
+  }
+
+  /** @throws ExceededException if the deadline is exceeded. */
+  void check() throws ExceededException {
+    if (isExceeded()) {
+      throw new ExceededException();
+    }
+  }
+
+  /**
+   * Wraps a text which is matched by regular expressions, so that a slow expression is stopped at
+   * the deadline. The returned text throws an {@link UncheckedIOException} wrapping an {@link
+   * ExceededException} once the deadline is exceeded.
+   */
+  CharSequence wrap(CharSequence text) {
+    return this == NONE ? text : new CheckedText(text);
+  }
+
+  private class CheckedText implements CharSequence {
+    private final CharSequence text;
+    private int reads;
+
+    CheckedText(CharSequence text) {
+      this.text = text;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (++reads % CHARS_PER_CHECK == 0 && isExceeded()) {
+        throw new UncheckedIOException(new ExceededException());
+      }
+      return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+      return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return text.toString();
+    }
+  }
+}
@@ -16,41 +16,33 @@ package com.googlesource.gerrit.plugins.uploadvalidator;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import com.google.gerrit.extensions.annotations.Exports;
-import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.api.projects.ProjectConfigEntryType;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.server.config.PluginConfig;
-import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.ProjectConfigEntry;
-import com.google.gerrit.server.events.CommitReceivedEvent;
-import com.google.gerrit.server.git.GitRepositoryManager;
-import com.google.gerrit.server.git.validators.CommitValidationException;
-import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
-import com.google.gerrit.server.project.NoSuchProjectException;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import org.eclipse.jgit.lib.FileMode;
-import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
 
-public class DuplicatePathnameValidator implements CommitValidationListener {
+public class DuplicatePathnameValidator implements ValidationRule.Factory {
 
   public static AbstractModule module() {
     return new AbstractModule() {
@@ -67,7 +59,7 @@ public class DuplicatePathnameValidator implements CommitValidationListener {
 
       @Override
       protected void configure() {
-        DynamicSet.bind(binder(), CommitValidationListener.class)
+        DynamicSet.bind(binder(), ValidationRule.Factory.class)
             .to(DuplicatePathnameValidator.class);
         bind(ProjectConfigEntry.class)
             .annotatedWith(Exports.named(KEY_REJECT_DUPLICATE_PATHNAMES))
@@ -112,152 +104,177 @@ public class DuplicatePathnameValidator implements CommitValidationListener {
     return Locale.forLanguageTag(cfg.getString(KEY_REJECT_DUPLICATE_PATHNAMES_LOCALE, "en"));
   }
 
-  @VisibleForTesting
-  Map<String, String> allPaths(Collection<String> leafs) {
-    Map<String, String> paths = new HashMap<>();
-    for (String cp : leafs) {
-      int n = cp.indexOf('/');
-      while (n > -1) {
-        String s = cp.substring(0, n);
-        paths.put(s.toLowerCase(locale), s);
-        n = cp.indexOf('/', n + 1);
-      }
-      paths.put(cp.toLowerCase(locale), cp);
-    }
-    return paths;
-  }
-
-  Set<String> allParentFolders(Collection<String> paths) {
-    Set<String> folders = new HashSet<>();
-    for (String cp : paths) {
-      int n = cp.indexOf('/');
-      while (n > -1) {
-        String s = cp.substring(0, n);
-        folders.add(s);
-        n = cp.indexOf('/', n + 1);
-      }
-    }
-    return folders;
-  }
-
   @VisibleForTesting
   static CommitValidationMessage conflict(String f1, String f2) {
     return new CommitValidationMessage(f1 + ": pathname conflicts with " + f2, true);
   }
 
-  private static boolean isDeleted(TreeWalk tw) {
-    return FileMode.MISSING.equals(tw.getRawMode(0));
-  }
-
-  private final String pluginName;
-  private final PluginConfigFactory cfgFactory;
-  private final GitRepositoryManager repoManager;
-  private final ValidatorConfig validatorConfig;
-
-  private Locale locale;
+  private final TreeNameIndexCache treeNameIndexCache;
 
-  @VisibleForTesting
-  void setLocale(Locale locale) {
-    this.locale = locale;
+  @Inject
+  DuplicatePathnameValidator(TreeNameIndexCache treeNameIndexCache) {
+    this.treeNameIndexCache = treeNameIndexCache;
   }
 
-  @Inject
-  DuplicatePathnameValidator(
-      @PluginName String pluginName,
-      PluginConfigFactory cfgFactory,
-      GitRepositoryManager repoManager,
-      ValidatorConfig validatorConfig) {
-    this.pluginName = pluginName;
-    this.cfgFactory = cfgFactory;
-    this.repoManager = repoManager;
-    this.validatorConfig = validatorConfig;
+  @Override
+  public String getValidatorOp() {
+    return KEY_REJECT_DUPLICATE_PATHNAMES;
   }
 
   @Override
-  public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
-      throws CommitValidationException {
-    try {
-      PluginConfig cfg =
-          cfgFactory.getFromProjectConfigWithInheritance(
-              receiveEvent.project.getNameKey(), pluginName);
-      if (isActive(cfg)
-          && validatorConfig.isEnabled(
-              receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
-              receiveEvent.getRefName(),
-              KEY_REJECT_DUPLICATE_PATHNAMES,
-              receiveEvent.pushOptions)) {
-        locale = getLocale(cfg);
-        try (Repository repo = repoManager.openRepository(receiveEvent.project.getNameKey())) {
-          List<CommitValidationMessage> messages =
-              performValidation(repo, receiveEvent.commit, receiveEvent.revWalk);
-          if (!messages.isEmpty()) {
-            throw new CommitValidationException("contains duplicate pathnames", messages);
-          }
-        }
-      }
-    } catch (NoSuchProjectException | IOException e) {
-      throw new CommitValidationException("failed to check for duplicate pathnames", e);
+  public ValidationRule create(PluginConfig cfg) {
+    if (!isActive(cfg)) {
+      return null;
     }
-    return Collections.emptyList();
+    Locale locale = getLocale(cfg);
+    return new ValidationRule() {
+      @Override
+      public String getRejectReason() {
+        return "contains duplicate pathnames";
+      }
+
+      @Override
+      public String getErrorReason() {
+        return "failed to check for duplicate pathnames";
+      }
+
+      @Override
+      public void checkCommit(CommitContext ctx, List<CommitValidationMessage> messages)
+          throws IOException {
+        messages.addAll(
+            performValidation(locale, ctx.getRevWalk(), ctx.getCommit(), ctx.getEntries()));
+      }
+    };
   }
 
   @VisibleForTesting
-  List<CommitValidationMessage> performValidation(Repository repo, RevCommit c, RevWalk revWalk)
-      throws IOException {
-    List<CommitValidationMessage> messages = new LinkedList<>();
-
-    Set<String> pathnames = CommitUtils.getChangedPaths(repo, c, revWalk);
-    checkForDuplicatesInSet(pathnames, messages);
-    if (!messages.isEmpty() || c.getParentCount() == 0) {
-      return messages;
+  List<CommitValidationMessage> performValidation(
+      Locale locale, RevWalk rw, RevCommit c, List<ChangedEntry> entries) throws IOException {
+    Request request = new Request(locale, rw.getObjectReader(), c.getTree());
+    CaseFoldingPathTrie changed = new CaseFoldingPathTrie(locale);
+    for (String path : CommitUtils.getChangedPaths(entries)) {
+      changed.insert(path, (p1, p2) -> request.messages.add(conflict(p1, p2)));
+    }
+    if (!request.messages.isEmpty() || c.getParentCount() == 0) {
+      return request.messages;
     }
 
-    try (TreeWalk tw = new TreeWalk(repo)) {
-      tw.setRecursive(false);
-      tw.addTree(c.getTree());
-      checkForDuplicatesAgainstTheWholeTree(tw, pathnames, messages);
+    List<ObjectId> parentTrees = new ArrayList<>(c.getParentCount());
+    for (RevCommit p : c.getParents()) {
+      if (p.getTree() == null) {
+        rw.parseHeaders(p);
+      }
+      parentTrees.add(p.getTree());
+    }
+    request.checkFolder(changed.getRoot(), parentTrees);
+    for (ChangedEntry entry : entries) {
+      if (!entry.isDeleted() && !entry.isFile()) {
+        request.checkEntry(changed, entry.getPath());
+      }
     }
-    return messages;
+    return request.messages;
   }
 
   @VisibleForTesting
   void checkForDuplicatesAgainstTheWholeTree(
-      TreeWalk tw, Set<String> changed, List<CommitValidationMessage> messages) throws IOException {
-    Map<String, String> all = allPaths(changed);
+      Locale locale,
+      ObjectReader reader,
+      RevTree tree,
+      Set<String> changed,
+      List<CommitValidationMessage> messages)
+      throws IOException {
+    CaseFoldingPathTrie trie = new CaseFoldingPathTrie(locale);
+    for (String path : changed) {
+      trie.insert(path, (p1, p2) -> {});
+    }
+    Request request = new Request(locale, reader, tree);
+    request.checkFolder(trie.getRoot(), ImmutableList.of(tree));
+    messages.addAll(request.messages);
+  }
+
+  /**
+   * The check of a single commit. The validator and its rules are shared by all receive threads,
+   * all state of a check is kept here.
+   */
+  private class Request {
+    private final Locale locale;
+    private final ObjectReader reader;
+    private final RevTree tree;
+    private final List<CommitValidationMessage> messages = new ArrayList<>();
+    /** Paths of the commit which were already checked against the changed files. */
+    private final Set<String> checked = new HashSet<>();
 
-    while (tw.next()) {
-      String currentPath = tw.getPathString();
+    Request(Locale locale, ObjectReader reader, RevTree tree) {
+      this.locale = locale;
+      this.reader = reader;
+      this.tree = tree;
+    }
 
-      if (isDeleted(tw)) {
-        continue;
+    /**
+     * Checks the changed entries of a folder against the entries which the folder has in the base
+     * trees, i.e. in the parents of the commit. Only folders which contain changed entries are in
+     * the trie, and only folders which are spelled exactly like a changed folder are entered, so
+     * the parent trees of all other folders are never read.
+     *
+     * <p>Every name in the tree of the commit either equals the name of an entry in one of the
+     * parents or is a changed entry, which were already checked against each other. An entry of a
+     * parent which only differs in case is a conflict if it was not deleted by the commit.
+     */
+    void checkFolder(CaseFoldingPathTrie.Node folder, List<ObjectId> baseTrees) throws IOException {
+      String prefix = folder.getPath().isEmpty() ? "" : folder.getPath() + "/";
+      List<TreeNameIndex> indexes = new ArrayList<>(baseTrees.size());
+      for (ObjectId baseTree : baseTrees) {
+        indexes.add(treeNameIndexCache.get(reader, baseTree, locale));
       }
 
-      String potentialDuplicate = all.get(currentPath.toLowerCase(locale));
-      if (potentialDuplicate == null) {
-        continue;
-      } else if (potentialDuplicate.equals(currentPath)) {
-        if (tw.isSubtree()) {
-          tw.enterSubtree();
+      for (Map.Entry<String, CaseFoldingPathTrie.Node> e : folder.getChildren().entrySet()) {
+        CaseFoldingPathTrie.Node changed = e.getValue();
+        Set<ObjectId> subtrees = new LinkedHashSet<>();
+        for (TreeNameIndex index : indexes) {
+          for (TreeNameIndex.Entry existing : index.get(e.getKey())) {
+            String path = prefix + existing.getName();
+            if (changed.hasPath(path)) {
+              if (existing.isTree()) {
+                // Parents which share the subtree only need to be checked once.
+                subtrees.add(existing.getObjectId());
+              }
+            } else if (checked.add(path) && TreeWalk.forPath(reader, path, tree) != null) {
+              messages.add(conflict(changed.getPath(), path));
+            }
+          }
+        }
+        if (!subtrees.isEmpty() && !changed.getChildren().isEmpty()) {
+          checkFolder(changed, new ArrayList<>(subtrees));
         }
-        continue;
-      } else {
-        messages.add(conflict(potentialDuplicate, currentPath));
       }
     }
-  }
 
-  private void checkForDuplicatesInSet(Set<String> files, List<CommitValidationMessage> messages) {
-    Set<String> filesAndFolders = Sets.newHashSet(files);
-    filesAndFolders.addAll(allParentFolders(files));
-    Map<String, String> seen = new HashMap<>();
-    for (String file : filesAndFolders) {
-      String lc = file.toLowerCase(locale);
-      String duplicate = seen.get(lc);
-      if (duplicate != null) {
-        messages.add(conflict(duplicate, file));
-      } else {
-        seen.put(lc, file);
+    /**
+     * Checks a submodule or symlink which was added or changed by the commit against the changed
+     * files. Such entries are not in the trie, and they are only in the base trees if they existed
+     * before. Like any entry of the tree of the commit, they are reported as a conflict of the
+     * changed files, but are not checked among each other.
+     */
+    void checkEntry(CaseFoldingPathTrie changed, String path) {
+      CaseFoldingPathTrie.Node node = changed.getRoot();
+      int start = 0;
+      while (start <= path.length()) {
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+          end = path.length();
+        }
+        node = node.getChild(changed.fold(path.substring(start, end)));
+        if (node == null) {
+          return;
+        }
+        String prefix = path.substring(0, end);
+        if (!node.hasPath(prefix)) {
+          if (checked.add(prefix)) {
+            messages.add(conflict(node.getPath(), prefix));
+          }
+          return;
+        }
+        start = end + 1;
       }
     }
   }
@@ -15,37 +15,23 @@
 package com.googlesource.gerrit.plugins.uploadvalidator;
 
 import com.google.gerrit.extensions.annotations.Exports;
-import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.api.projects.ProjectConfigEntryType;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.server.config.PluginConfig;
-import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.ProjectConfigEntry;
-import com.google.gerrit.server.events.CommitReceivedEvent;
-import com.google.gerrit.server.git.GitRepositoryManager;
-import com.google.gerrit.server.git.validators.CommitValidationException;
-import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
-import com.google.gerrit.server.project.NoSuchProjectException;
 import com.google.inject.AbstractModule;
-import com.google.inject.Inject;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 
-public class FileExtensionValidator implements CommitValidationListener {
+public class FileExtensionValidator implements ValidationRule.Factory {
 
   public static AbstractModule module() {
     return new AbstractModule() {
 
       @Override
       public void configure() {
-        DynamicSet.bind(binder(), CommitValidationListener.class).to(FileExtensionValidator.class);
+        DynamicSet.bind(binder(), ValidationRule.Factory.class).to(FileExtensionValidator.class);
         bind(ProjectConfigEntry.class)
             .annotatedWith(Exports.named(KEY_BLOCKED_FILE_EXTENSION))
             .toInstance(
@@ -63,23 +49,6 @@ public class FileExtensionValidator implements CommitValidationListener {
 
   public static final String KEY_BLOCKED_FILE_EXTENSION = "blockedFileExtension";
 
-  private final String pluginName;
-  private final PluginConfigFactory cfgFactory;
-  private final GitRepositoryManager repoManager;
-  private final ValidatorConfig validatorConfig;
-
-  @Inject
-  FileExtensionValidator(
-      @PluginName String pluginName,
-      PluginConfigFactory cfgFactory,
-      GitRepositoryManager repoManager,
-      ValidatorConfig validatorConfig) {
-    this.pluginName = pluginName;
-    this.cfgFactory = cfgFactory;
-    this.repoManager = repoManager;
-    this.validatorConfig = validatorConfig;
-  }
-
   private static List<String> getBlockedExtensions(PluginConfig cfg) {
     List<String> blockedExtensions = new ArrayList<>();
     for (String extension : cfg.getStringList(KEY_BLOCKED_FILE_EXTENSION)) {
@@ -93,47 +62,51 @@ public class FileExtensionValidator implements CommitValidationListener {
   }
 
   @Override
-  public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
-      throws CommitValidationException {
-    try {
-      PluginConfig cfg =
-          cfgFactory.getFromProjectConfigWithInheritance(
-              receiveEvent.project.getNameKey(), pluginName);
-      if (isActive(cfg)
-          && validatorConfig.isEnabled(
-              receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
-              receiveEvent.getRefName(),
-              KEY_BLOCKED_FILE_EXTENSION,
-              receiveEvent.pushOptions)) {
-        try (Repository repo = repoManager.openRepository(receiveEvent.project.getNameKey())) {
-          List<CommitValidationMessage> messages =
-              performValidation(
-                  repo, receiveEvent.commit, receiveEvent.revWalk, getBlockedExtensions(cfg));
-          if (!messages.isEmpty()) {
-            throw new CommitValidationException(
-                "contains files with blocked file extensions", messages);
-          }
-        }
-      }
-    } catch (NoSuchProjectException | IOException e) {
-      throw new CommitValidationException("failed to check on file extensions", e);
-    }
-    return Collections.emptyList();
+  public String getValidatorOp() {
+    return KEY_BLOCKED_FILE_EXTENSION;
+  }
+
+  @Override
+  public ValidationRule create(PluginConfig cfg) {
+    return isActive(cfg) ? new Rule(getBlockedExtensions(cfg)) : null;
   }
 
   static List<CommitValidationMessage> performValidation(
-      Repository repo, RevCommit c, RevWalk revWalk, List<String> blockedFileExtensions)
-      throws IOException {
-    List<CommitValidationMessage> messages = new LinkedList<>();
-    for (String file : CommitUtils.getChangedPaths(repo, c, revWalk)) {
+      List<ChangedEntry> entries, List<String> blockedFileExtensions) {
+    return ValidationEngine.checkPaths(entries, new Rule(blockedFileExtensions));
+  }
+
+  private static class Rule implements ValidationRule {
+    /** Lower case, see {@link #getBlockedExtensions(PluginConfig)}. */
+    private final List<String> blockedFileExtensions;
+
+    Rule(List<String> blockedFileExtensions) {
+      this.blockedFileExtensions = blockedFileExtensions;
+    }
+
+    @Override
+    public String getRejectReason() {
+      return "contains files with blocked file extensions";
+    }
+
+    @Override
+    public String getErrorReason() {
+      return "failed to check on file extensions";
+    }
+
+    @Override
+    public void checkPath(ChangedEntry entry, List<CommitValidationMessage> messages) {
+      if (!entry.isFile()) {
+        return;
+      }
+      String file = entry.getPath();
+      String lowerCaseFile = file.toLowerCase();
       for (String blockedExtension : blockedFileExtensions) {
-        if (file.toLowerCase().endsWith(blockedExtension.toLowerCase())) {
+        if (lowerCaseFile.endsWith(blockedExtension)) {
           messages.add(new CommitValidationMessage("blocked file: " + file, true));
           break;
         }
       }
     }
-    return messages;
   }
 }
@@ -17,34 +17,25 @@ package com.googlesource.gerrit.plugins.uploadvalidator;
 import com.google.common.base.Function;
 import com.google.common.collect.FluentIterable;
 import com.google.gerrit.extensions.annotations.Exports;
-import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.api.projects.ProjectConfigEntryType;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.server.config.PluginConfig;
-import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.ProjectConfigEntry;
-import com.google.gerrit.server.events.CommitReceivedEvent;
-import com.google.gerrit.server.git.validators.CommitValidationException;
-import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
-import com.google.gerrit.server.project.NoSuchProjectException;
 import com.google.inject.AbstractModule;
-import com.google.inject.Inject;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import org.eclipse.jgit.revwalk.FooterLine;
 
-public class FooterValidator implements CommitValidationListener {
+public class FooterValidator implements ValidationRule.Factory {
 
   public static AbstractModule module() {
     return new AbstractModule() {
 
       @Override
       protected void configure() {
-        DynamicSet.bind(binder(), CommitValidationListener.class).to(FooterValidator.class);
+        DynamicSet.bind(binder(), ValidationRule.Factory.class).to(FooterValidator.class);
         bind(ProjectConfigEntry.class)
             .annotatedWith(Exports.named(KEY_REQUIRED_FOOTER))
             .toInstance(
@@ -62,62 +53,52 @@ public class FooterValidator implements CommitValidationListener {
 
   public static final String KEY_REQUIRED_FOOTER = "requiredFooter";
 
-  private final String pluginName;
-  private final PluginConfigFactory cfgFactory;
-  private final ValidatorConfig validatorConfig;
-
-  @Inject
-  FooterValidator(
-      @PluginName String pluginName,
-      PluginConfigFactory cfgFactory,
-      ValidatorConfig validatorConfig) {
-    this.pluginName = pluginName;
-    this.cfgFactory = cfgFactory;
-    this.validatorConfig = validatorConfig;
+  @Override
+  public String getValidatorOp() {
+    return KEY_REQUIRED_FOOTER;
   }
 
   @Override
-  public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
-      throws CommitValidationException {
-    try {
-      PluginConfig cfg =
-          cfgFactory.getFromProjectConfigWithInheritance(
-              receiveEvent.project.getNameKey(), pluginName);
-      String[] requiredFooters = cfg.getStringList(KEY_REQUIRED_FOOTER);
-      if (requiredFooters.length > 0
-          && validatorConfig.isEnabled(
-              receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
-              receiveEvent.getRefName(),
-              KEY_REQUIRED_FOOTER,
-              receiveEvent.pushOptions)) {
-        List<CommitValidationMessage> messages = new LinkedList<>();
-        Set<String> footers =
-            FluentIterable.from(receiveEvent.commit.getFooterLines())
-                .transform(
-                    new Function<FooterLine, String>() {
-                      @Override
-                      public String apply(FooterLine f) {
-                        return f.getKey().toLowerCase(Locale.US);
-                      }
-                    })
-                .toSet();
-        for (int i = 0; i < requiredFooters.length; i++) {
-          if (!footers.contains(requiredFooters[i].toLowerCase(Locale.US))) {
-            messages.add(
-                new CommitValidationMessage(
-                    "missing required footer: " + requiredFooters[i], true));
-          }
-        }
-        if (!messages.isEmpty()) {
-          throw new CommitValidationException(
-              "missing required footers in commit message", messages);
+  public ValidationRule create(PluginConfig cfg) {
+    String[] requiredFooters = cfg.getStringList(KEY_REQUIRED_FOOTER);
+    return requiredFooters.length > 0 ? new Rule(requiredFooters) : null;
+  }
+
+  private static class Rule implements ValidationRule {
+    private final String[] requiredFooters;
+
+    Rule(String[] requiredFooters) {
+      this.requiredFooters = requiredFooters;
+    }
+
+    @Override
+    public String getRejectReason() {
+      return "missing required footers in commit message";
+    }
+
+    @Override
+    public String getErrorReason() {
+      return "failed to check for required footers";
+    }
+
+    @Override
+    public void checkCommit(CommitContext ctx, List<CommitValidationMessage> messages) {
+      Set<String> footers =
+          FluentIterable.from(ctx.getCommit().getFooterLines())
+              .transform(
+                  new Function<FooterLine, String>() {
+                    @Override
+                    public String apply(FooterLine f) {
+                      return f.getKey().toLowerCase(Locale.US);
+                    }
+                  })
+              .toSet();
+      for (int i = 0; i < requiredFooters.length; i++) {
+        if (!footers.contains(requiredFooters[i].toLowerCase(Locale.US))) {
+          messages.add(
+              new CommitValidationMessage("missing required footer: " + requiredFooters[i], true));
         }
       }
-    } catch (NoSuchProjectException e) {
-      throw new CommitValidationException("failed to check for required footers", e);
     }
-
-    return Collections.emptyList();
   }
 }
@@ -14,40 +14,33 @@
 
 package com.googlesource.gerrit.plugins.uploadvalidator;
 
+import static com.googlesource.gerrit.plugins.uploadvalidator.PatternCacheModule.CACHE_NAME;
+
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.extensions.annotations.Exports;
-import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.api.projects.ProjectConfigEntryType;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.server.config.PluginConfig;
-import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.ProjectConfigEntry;
-import com.google.gerrit.server.events.CommitReceivedEvent;
-import com.google.gerrit.server.git.GitRepositoryManager;
-import com.google.gerrit.server.git.validators.CommitValidationException;
-import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
-import com.google.gerrit.server.project.NoSuchProjectException;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
+import com.google.inject.name.Named;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 
-public class InvalidFilenameValidator implements CommitValidationListener {
+public class InvalidFilenameValidator implements ValidationRule.Factory {
 
   public static AbstractModule module() {
     return new AbstractModule() {
 
       @Override
       protected void configure() {
-        DynamicSet.bind(binder(), CommitValidationListener.class)
-            .to(InvalidFilenameValidator.class);
+        DynamicSet.bind(binder(), ValidationRule.Factory.class).to(InvalidFilenameValidator.class);
         bind(ProjectConfigEntry.class)
             .annotatedWith(Exports.named(KEY_INVALID_FILENAME_PATTERN))
             .toInstance(
@@ -66,21 +59,11 @@ public class InvalidFilenameValidator implements CommitValidationListener {
   public static final String KEY_INVALID_FILENAME = "invalidFilename";
   public static final String KEY_INVALID_FILENAME_PATTERN = KEY_INVALID_FILENAME + "Pattern";
 
-  private final String pluginName;
-  private final PluginConfigFactory cfgFactory;
-  private final GitRepositoryManager repoManager;
-  private final ValidatorConfig validatorConfig;
+  private final LoadingCache<String, Pattern> patternCache;
 
   @Inject
-  InvalidFilenameValidator(
-      @PluginName String pluginName,
-      PluginConfigFactory cfgFactory,
-      GitRepositoryManager repoManager,
-      ValidatorConfig validatorConfig) {
-    this.pluginName = pluginName;
-    this.cfgFactory = cfgFactory;
-    this.repoManager = repoManager;
-    this.validatorConfig = validatorConfig;
+  InvalidFilenameValidator(@Named(CACHE_NAME) LoadingCache<String, Pattern> patternCache) {
+    this.patternCache = patternCache;
   }
 
   static boolean isActive(PluginConfig cfg) {
@@ -88,54 +71,55 @@ public class InvalidFilenameValidator implements CommitValidationListener {
   }
 
   @Override
-  public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
-      throws CommitValidationException {
-    try {
-      PluginConfig cfg =
-          cfgFactory.getFromProjectConfigWithInheritance(
-              receiveEvent.project.getNameKey(), pluginName);
-      if (isActive(cfg)
-          && validatorConfig.isEnabled(
-              receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
-              receiveEvent.getRefName(),
-              KEY_INVALID_FILENAME,
-              receiveEvent.pushOptions)) {
-        try (Repository repo = repoManager.openRepository(receiveEvent.project.getNameKey())) {
-          List<CommitValidationMessage> messages =
-              performValidation(
-                  repo,
-                  receiveEvent.commit,
-                  receiveEvent.revWalk,
-                  cfg.getStringList(KEY_INVALID_FILENAME_PATTERN));
-          if (!messages.isEmpty()) {
-            throw new CommitValidationException(
-                "contains files with an invalid filename", messages);
-          }
-        }
-      }
-    } catch (NoSuchProjectException | IOException e) {
-      throw new CommitValidationException("failed to check on invalid file names", e);
+  public String getValidatorOp() {
+    return KEY_INVALID_FILENAME;
+  }
+
+  @Override
+  public ValidationRule create(PluginConfig cfg) throws ExecutionException {
+    if (!isActive(cfg)) {
+      return null;
     }
-    return Collections.emptyList();
+    ImmutableMap<String, Pattern> invalidFilenamePatterns =
+        patternCache.getAll(Arrays.asList(cfg.getStringList(KEY_INVALID_FILENAME_PATTERN)));
+    return new Rule(invalidFilenamePatterns.values());
   }
 
   static List<CommitValidationMessage> performValidation(
-      Repository repo, RevCommit c, RevWalk revWalk, String[] patterns) throws IOException {
-    List<Pattern> invalidFilenamePatterns = new ArrayList<>();
-    for (String s : patterns) {
-      invalidFilenamePatterns.add(Pattern.compile(s));
+      List<ChangedEntry> entries, Collection<Pattern> patterns) {
+    return ValidationEngine.checkPaths(entries, new Rule(patterns));
+  }
+
+  private static class Rule implements ValidationRule {
+    private final Collection<Pattern> invalidFilenamePatterns;
+
+    Rule(Collection<Pattern> patterns) {
+      this.invalidFilenamePatterns = patterns;
+    }
+
+    @Override
+    public String getRejectReason() {
+      return "contains files with an invalid filename";
     }
-    List<CommitValidationMessage> messages = new LinkedList<>();
-    for (String file : CommitUtils.getChangedPaths(repo, c, revWalk)) {
+
+    @Override
+    public String getErrorReason() {
+      return "failed to check on invalid file names";
+    }
+
+    @Override
+    public void checkPath(ChangedEntry entry, List<CommitValidationMessage> messages) {
+      if (!entry.isFile()) {
+        return;
+      }
       for (Pattern p : invalidFilenamePatterns) {
-        if (p.matcher(file).find()) {
+        if (p.matcher(entry.getPath()).find()) {
           messages.add(
-              new CommitValidationMessage("invalid characters found in filename: " + file, true));
+              new CommitValidationMessage(
+                  "invalid characters found in filename: " + entry.getPath(), true));
           break;
         }
       }
     }
-    return messages;
   }
 }
@@ -16,44 +16,35 @@ package com.googlesource.gerrit.plugins.uploadvalidator;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.gerrit.extensions.annotations.Exports;
-import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.api.projects.ProjectConfigEntryType;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.server.config.PluginConfig;
-import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.ProjectConfigEntry;
-import com.google.gerrit.server.events.CommitReceivedEvent;
-import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.validators.CommitValidationException;
-import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
-import com.google.gerrit.server.project.NoSuchProjectException;
+import com.google.gerrit.server.patch.DiffNotAvailableException;
+import com.google.gerrit.server.patch.DiffOperations;
+import com.google.gerrit.server.patch.filediff.FileDiffOutput;
+import com.google.gerrit.server.patch.filediff.TaggedEdit;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import org.eclipse.jgit.diff.RawText;
-import org.eclipse.jgit.lib.ObjectId;
+import java.util.stream.Collectors;
+import org.eclipse.jgit.diff.Edit;
 import org.eclipse.jgit.lib.ObjectLoader;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 
-public class InvalidLineEndingValidator implements CommitValidationListener {
+public class InvalidLineEndingValidator implements ValidationRule.Factory {
 
   public static AbstractModule module() {
     return new AbstractModule() {
 
       @Override
       protected void configure() {
-        DynamicSet.bind(binder(), CommitValidationListener.class)
+        DynamicSet.bind(binder(), ValidationRule.Factory.class)
             .to(InvalidLineEndingValidator.class);
         bind(ProjectConfigEntry.class)
             .annotatedWith(Exports.named(KEY_CHECK_REJECT_WINDOWS_LINE_ENDINGS))
@@ -67,99 +58,182 @@ public class InvalidLineEndingValidator implements CommitValidationListener {
                     "Windows line endings. Pushes of commits that include files "
                         + "containing carriage return (CR) characters will be "
                         + "rejected."));
+        bind(ProjectConfigEntry.class)
+            .annotatedWith(Exports.named(KEY_CHECK_WINDOWS_LINE_ENDINGS_IN_EDITS_ONLY))
+            .toInstance(
+                new ProjectConfigEntry(
+                    "Reject Windows Line Endings In Edits Only",
+                    "false",
+                    ProjectConfigEntryType.BOOLEAN,
+                    null,
+                    false,
+                    "Only check the lines added or modified by a commit for "
+                        + "carriage return (CR) characters."));
       }
     };
   }
 
   public static final String KEY_CHECK_REJECT_WINDOWS_LINE_ENDINGS = "rejectWindowsLineEndings";
+  public static final String KEY_CHECK_WINDOWS_LINE_ENDINGS_IN_EDITS_ONLY =
+      KEY_CHECK_REJECT_WINDOWS_LINE_ENDINGS + "InEditsOnly";
 
-  private final String pluginName;
-  private final PluginConfigFactory cfgFactory;
-  private final GitRepositoryManager repoManager;
   private final ContentTypeUtil contentTypeUtil;
-  private final ValidatorConfig validatorConfig;
+  private final DiffOperations diffOperations;
 
   @Inject
-  InvalidLineEndingValidator(
-      @PluginName String pluginName,
-      ContentTypeUtil contentTypeUtil,
-      PluginConfigFactory cfgFactory,
-      GitRepositoryManager repoManager,
-      ValidatorConfig validatorConfig) {
-    this.pluginName = pluginName;
-    this.cfgFactory = cfgFactory;
-    this.repoManager = repoManager;
+  InvalidLineEndingValidator(ContentTypeUtil contentTypeUtil, DiffOperations diffOperations) {
     this.contentTypeUtil = contentTypeUtil;
-    this.validatorConfig = validatorConfig;
+    this.diffOperations = diffOperations;
   }
 
   static boolean isActive(PluginConfig cfg) {
     return cfg.getBoolean(KEY_CHECK_REJECT_WINDOWS_LINE_ENDINGS, false);
   }
 
+  static boolean isInEditsOnly(PluginConfig cfg) {
+    return cfg.getBoolean(KEY_CHECK_WINDOWS_LINE_ENDINGS_IN_EDITS_ONLY, false);
+  }
+
+  @Override
+  public String getValidatorOp() {
+    return KEY_CHECK_REJECT_WINDOWS_LINE_ENDINGS;
+  }
+
   @Override
-  public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
+  public ValidationRule create(PluginConfig cfg) {
+    return isActive(cfg) ? new Rule(cfg) : null;
+  }
+
+  @VisibleForTesting
+  List<CommitValidationMessage> performValidation(CommitContext ctx, PluginConfig cfg)
       throws CommitValidationException {
-    try {
-      PluginConfig cfg =
-          cfgFactory.getFromProjectConfigWithInheritance(
-              receiveEvent.project.getNameKey(), pluginName);
-      if (isActive(cfg)
-          && validatorConfig.isEnabled(
-              receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
-              receiveEvent.getRefName(),
-              KEY_CHECK_REJECT_WINDOWS_LINE_ENDINGS,
-              receiveEvent.pushOptions)) {
-        try (Repository repo = repoManager.openRepository(receiveEvent.project.getNameKey())) {
-          List<CommitValidationMessage> messages =
-              performValidation(repo, receiveEvent.commit, receiveEvent.revWalk, cfg);
-          if (!messages.isEmpty()) {
-            throw new CommitValidationException(
-                "contains files with a Windows line ending", messages);
-          }
+    return ValidationEngine.validate(ctx, new Rule(cfg));
+  }
+
+  private class Rule implements ValidationRule {
+    private final PluginConfig cfg;
+    private final boolean inEditsOnly;
+
+    Rule(PluginConfig cfg) {
+      this.cfg = cfg;
+      this.inEditsOnly = isInEditsOnly(cfg);
+    }
+
+    @Override
+    public String getRejectReason() {
+      return "contains files with a Windows line ending";
+    }
+
+    @Override
+    public String getErrorReason() {
+      return "failed to check on Windows line endings";
+    }
+
+    @Override
+    public boolean inspectsContent() {
+      return true;
+    }
+
+    @Override
+    public String getContentCheckKey(CommitContext ctx, ChangedEntry entry)
+        throws DiffNotAvailableException {
+      if (!inEditsOnly) {
+        return "";
+      }
+      FileDiffOutput fileDiff = ctx.getModifiedFiles(diffOperations).get(entry.getPath());
+      return fileDiff != null ? ValidationResultCache.editedLines(fileDiff) : null;
+    }
+
+    @Override
+    public void checkContent(
+        CommitContext ctx,
+        ChangedEntry entry,
+        ObjectLoader ol,
+        List<CommitValidationMessage> messages)
+        throws IOException, ExecutionException, DiffNotAvailableException {
+      String path = entry.getPath();
+      FileDiffOutput fileDiff = null;
+      if (inEditsOnly) {
+        fileDiff = ctx.getModifiedFiles(diffOperations).get(path);
+        if (fileDiff == null) {
+          return;
         }
       }
-    } catch (NoSuchProjectException | IOException | ExecutionException e) {
-      throw new CommitValidationException("failed to check on Windows line endings", e);
+      if (contentTypeUtil.isBinary(entry.getObjectId(), ol, path, cfg)) {
+        return;
+      }
+      Deadline deadline = ctx.getDeadline();
+      if (fileDiff != null
+          ? containsCR(ol, fileDiff.edits(), deadline)
+          : containsCR(ol, deadline)) {
+        messages.add(
+            new CommitValidationMessage(
+                "found carriage return (CR) character in file: " + path, true));
+      }
     }
-    return Collections.emptyList();
   }
 
+  /**
+   * Scans the raw bytes of the blob for a CR. In UTF-8 a CR is always encoded as the single byte
+   * {@code 0x0D}, hence the content doesn't need to be decoded.
+   */
   @VisibleForTesting
-  List<CommitValidationMessage> performValidation(
-      Repository repo, RevCommit c, RevWalk revWalk, PluginConfig cfg)
-      throws IOException, ExecutionException {
-    List<CommitValidationMessage> messages = new LinkedList<>();
-    Map<String, ObjectId> content = CommitUtils.getChangedContent(repo, c, revWalk);
-    for (String path : content.keySet()) {
-      ObjectLoader ol = revWalk.getObjectReader().open(content.get(path));
-      try (InputStream in = ol.openStream()) {
-        if (RawText.isBinary(in) || contentTypeUtil.isForbiddenBinaryContentType(ol, path, cfg)) {
-          continue;
-        }
-      }
-      try (InputStreamReader isr = new InputStreamReader(ol.openStream(), StandardCharsets.UTF_8)) {
-        if (doesInputStreanContainCR(isr)) {
-          messages.add(
-              new CommitValidationMessage(
-                  "found carriage return (CR) character in file: " + path, true));
+  static boolean containsCR(ObjectLoader ol) throws IOException {
+    return containsCR(ol, Deadline.NONE);
+  }
+
+  /**
+   * Scans the raw bytes of the blob for a CR, checking the deadline for every buffer of a large
+   * blob.
+   */
+  private static boolean containsCR(ObjectLoader ol, Deadline deadline) throws IOException {
+    if (!ol.isLarge()) {
+      byte[] content = ol.getCachedBytes();
+      return indexOfCR(content, content.length) >= 0;
+    }
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream in = ol.openStream()) {
+      int n;
+      while ((n = in.read(buffer)) > 0) {
+        deadline.check();
+        if (indexOfCR(buffer, n) >= 0) {
+          return true;
         }
       }
     }
-    return messages;
+    return false;
   }
 
-  private static boolean doesInputStreanContainCR(InputStreamReader isr) throws IOException {
-    char[] buffer = new char[1024];
-    int n;
-    while ((n = isr.read(buffer, 0, buffer.length)) > 0) {
-      for (int x = n - 1; x >= 0; x--) {
-        if (buffer[x] == '\r') {
-          return true;
+  /** Scans the lines of the blob which were added or modified by the passed edits for a CR. */
+  private static boolean containsCR(ObjectLoader ol, List<TaggedEdit> edits, Deadline deadline)
+      throws IOException {
+    List<Edit> sorted =
+        edits.stream()
+            .map(TaggedEdit::jgitEdit)
+            .sorted(Comparator.comparingInt(Edit::getBeginB))
+            .collect(Collectors.toList());
+    try (LineCursor lines = new LineCursor(ol.openStream())) {
+      for (Edit edit : sorted) {
+        if (!lines.skipTo(edit.getBeginB())) {
+          return false;
+        }
+        for (int i = edit.getBeginB(); i < edit.getEndB(); i++) {
+          deadline.check();
+          if (lines.nextLineContains((byte) '\r')) {
+            return true;
+          }
         }
       }
     }
     return false;
   }
+
+  private static int indexOfCR(byte[] buffer, int length) {
+    for (int i = 0; i < length; i++) {
+      if (buffer[i] == '\r') {
+        return i;
+      }
+    }
+    return -1;
+  }
 }
@@ -0,0 +1,209 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Finds the matches of many blocked keyword patterns in a text with a single scan for all literal
+ * keywords.
+ *
+ * <p>Patterns which only match a literal string are compiled into an Aho-Corasick automaton. All
+ * other patterns are combined into one alternation which is used to skip texts in which none of
+ * them can match. Patterns with back references or flags can't be combined and are always matched
+ * on their own.
+ *
+ * <p>{@link #find} returns the same matches, in the same order, as running {@link Matcher#find()}
+ * for every pattern in turn.
+ */
+class KeywordMatcher {
+  private static final String REGEX_META_CHARS = "\\^$.|?*+()[]{}";
+  private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\(\\d|k<)");
+
+  private final Pattern[] patterns;
+  /** The literal of each pattern, {@code null} if the pattern is matched as regular expression. */
+  private final String[] literals;
+  /** Whether the pattern is part of the {@link #combined} alternation. */
+  private final boolean[] inCombined;
+
+  private final Node root;
+  private final boolean hasLiterals;
+  private final Pattern combined;
+
+  KeywordMatcher(Collection<Pattern> patterns) {
+    this.patterns = patterns.toArray(new Pattern[0]);
+    this.literals = new String[this.patterns.length];
+    this.inCombined = new boolean[this.patterns.length];
+    this.root = new Node();
+
+    boolean hasLiterals = false;
+    List<String> combinable = new ArrayList<>();
+    for (int i = 0; i < this.patterns.length; i++) {
+      Pattern p = this.patterns[i];
+      literals[i] = p.flags() == 0 ? toLiteral(p.pattern()) : null;
+      if (literals[i] != null) {
+        addKeyword(literals[i], i);
+        hasLiterals = true;
+      } else if (p.flags() == 0 && !BACK_REFERENCE.matcher(p.pattern()).find()) {
+        combinable.add("(?:" + p.pattern() + ")");
+        inCombined[i] = true;
+      }
+    }
+    this.hasLiterals = hasLiterals;
+    this.combined = combine(combinable);
+    if (combined == null) {
+      Arrays.fill(inCombined, false);
+    }
+    if (hasLiterals) {
+      computeFailureLinks();
+    }
+  }
+
+  /** @return all matches of all patterns in the passed text, grouped by pattern. */
+  List<String> find(CharSequence text) {
+    List<List<String>> literalMatches = hasLiterals ? findLiterals(text) : null;
+    boolean regexMayMatch = combined == null || combined.matcher(text).find();
+
+    List<String> found = new ArrayList<>();
+    for (int i = 0; i < patterns.length; i++) {
+      if (literals[i] != null) {
+        found.addAll(literalMatches.get(i));
+      } else if (regexMayMatch || !inCombined[i]) {
+        Matcher matcher = patterns[i].matcher(text);
+        while (matcher.find()) {
+          found.add(matcher.group());
+        }
+      }
+    }
+    return found;
+  }
+
+  private List<List<String>> findLiterals(CharSequence text) {
+    List<List<String>> matches = new ArrayList<>(patterns.length);
+    int[] lastEnd = new int[patterns.length];
+    for (int i = 0; i < patterns.length; i++) {
+      matches.add(new ArrayList<>(0));
+    }
+
+    Node node = root;
+    for (int pos = 0; pos < text.length(); pos++) {
+      char c = text.charAt(pos);
+      Node next = node.next.get(c);
+      while (next == null && node != root) {
+        node = node.failure;
+        next = node.next.get(c);
+      }
+      node = next != null ? next : root;
+      for (int keyword : node.keywords) {
+        int end = pos + 1;
+        int start = end - literals[keyword].length();
+        // Like Matcher.find(), report non-overlapping occurrences from left to right.
+        if (start >= lastEnd[keyword]) {
+          matches.get(keyword).add(literals[keyword]);
+          lastEnd[keyword] = end;
+        }
+      }
+    }
+    return matches;
+  }
+
+  private void addKeyword(String keyword, int index) {
+    Node node = root;
+    for (int i = 0; i < keyword.length(); i++) {
+      node = node.next.computeIfAbsent(keyword.charAt(i), c -> new Node());
+    }
+    node.keywords = append(node.keywords, index);
+  }
+
+  private void computeFailureLinks() {
+    Queue<Node> queue = new ArrayDeque<>();
+    for (Node child : root.next.values()) {
+      child.failure = root;
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      Node node = queue.remove();
+      for (Map.Entry<Character, Node> e : node.next.entrySet()) {
+        Node child = e.getValue();
+        Node failure = node.failure;
+        while (failure != root && !failure.next.containsKey(e.getKey())) {
+          failure = failure.failure;
+        }
+        Node target = failure.next.get(e.getKey());
+        child.failure = target != null && target != child ? target : root;
+        for (int keyword : child.failure.keywords) {
+          child.keywords = append(child.keywords, keyword);
+        }
+        queue.add(child);
+      }
+    }
+  }
+
+  private static int[] append(int[] a, int value) {
+    int[] result = Arrays.copyOf(a, a.length + 1);
+    result[a.length] = value;
+    return result;
+  }
+
+  private static Pattern combine(List<String> regexes) {
+    if (regexes.size() < 2) {
+      return null;
+    }
+    try {
+      return Pattern.compile(String.join("|", regexes));
+    } catch (PatternSyntaxException e) {
+      // E.g. the same named group is used by several patterns.
+      return null;
+    }
+  }
+
+  /**
+   * @return the string which is matched by the passed regular expression, or {@code null} if the
+   *     expression doesn't match exactly one non-empty literal string.
+   */
+  static String toLiteral(String regex) {
+    StringBuilder literal = new StringBuilder(regex.length());
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+          return null;
+        }
+        literal.append(regex.charAt(++i));
+      } else if (REGEX_META_CHARS.indexOf(c) >= 0) {
+        return null;
+      } else {
+        literal.append(c);
+      }
+    }
+    return literal.length() > 0 ? literal.toString() : null;
+  }
+
+  private static class Node {
+    final Map<Character, Node> next = new HashMap<>();
+    Node failure;
+    int[] keywords = new int[0];
+  }
+}
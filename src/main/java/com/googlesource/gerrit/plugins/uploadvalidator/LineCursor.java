@@ -0,0 +1,162 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads selected lines of a stream. Lines which are skipped are not decoded, and nothing after the
+ * last requested line is read.
+ *
+ * <p>Lines are terminated by {@code '\n'}, like the lines of a diff; a trailing {@code '\r'} is not
+ * part of the returned line.
+ */
+class LineCursor implements Closeable {
+  private final InputStream in;
+  private final byte[] buf = new byte[8192];
+  private int pos;
+  private int end;
+
+  private byte[] lineBuf = new byte[256];
+  private int lineLen;
+
+  /** 0-based index of the line which is returned by the next call of {@link #nextLine()}. */
+  private int line;
+
+  LineCursor(InputStream in) {
+    this.in = in;
+  }
+
+  /** @return 0-based index of the line at which the cursor is positioned. */
+  int getLine() {
+    return line;
+  }
+
+  /**
+   * Moves the cursor forward to the passed 0-based line.
+   *
+   * @return {@code false} if the stream ends before that line.
+   */
+  boolean skipTo(int target) throws IOException {
+    while (line < target) {
+      if (!fill()) {
+        return false;
+      }
+      int nl = indexOfNewline();
+      if (nl < 0) {
+        pos = end;
+      } else {
+        pos = nl + 1;
+        line++;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the line at which the cursor is positioned, or {@code null} at the end of the stream.
+   *     The cursor is moved to the next line.
+   */
+  String nextLine() throws IOException {
+    lineLen = 0;
+    boolean read = false;
+    while (fill()) {
+      read = true;
+      int nl = indexOfNewline();
+      if (nl >= 0) {
+        append(nl);
+        pos = nl + 1;
+        line++;
+        return decode();
+      }
+      append(end);
+      pos = end;
+    }
+    if (!read) {
+      return null;
+    }
+    line++;
+    return decode();
+  }
+
+  /**
+   * Moves the cursor to the next line without decoding the line.
+   *
+   * @return whether the line at which the cursor was positioned contains the passed byte, its line
+   *     terminator included.
+   */
+  boolean nextLineContains(byte b) throws IOException {
+    boolean read = false;
+    boolean found = false;
+    while (fill()) {
+      read = true;
+      int nl = indexOfNewline();
+      int stop = nl < 0 ? end : nl + 1;
+      for (int i = pos; i < stop && !found; i++) {
+        found = buf[i] == b;
+      }
+      pos = stop;
+      if (nl >= 0) {
+        line++;
+        return found;
+      }
+    }
+    if (read) {
+      line++;
+    }
+    return found;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  private boolean fill() throws IOException {
+    if (pos < end) {
+      return true;
+    }
+    pos = 0;
+    end = Math.max(in.read(buf), 0);
+    return end > 0;
+  }
+
+  private int indexOfNewline() {
+    for (int i = pos; i < end; i++) {
+      if (buf[i] == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void append(int stop) {
+    int n = stop - pos;
+    if (lineLen + n > lineBuf.length) {
+      lineBuf = Arrays.copyOf(lineBuf, Math.max(lineBuf.length * 2, lineLen + n));
+    }
+    System.arraycopy(buf, pos, lineBuf, lineLen, n);
+    lineLen += n;
+  }
+
+  private String decode() {
+    int len = lineLen > 0 && lineBuf[lineLen - 1] == '\r' ? lineLen - 1 : lineLen;
+    return new String(lineBuf, 0, len, StandardCharsets.UTF_8);
+  }
+}
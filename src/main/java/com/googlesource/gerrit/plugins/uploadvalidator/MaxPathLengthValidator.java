@@ -15,35 +15,21 @@
 package com.googlesource.gerrit.plugins.uploadvalidator;
 
 import com.google.gerrit.extensions.annotations.Exports;
-import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.server.config.PluginConfig;
-import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.ProjectConfigEntry;
-import com.google.gerrit.server.events.CommitReceivedEvent;
-import com.google.gerrit.server.git.GitRepositoryManager;
-import com.google.gerrit.server.git.validators.CommitValidationException;
-import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
-import com.google.gerrit.server.project.NoSuchProjectException;
 import com.google.inject.AbstractModule;
-import com.google.inject.Inject;
-import java.io.IOException;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 
-public class MaxPathLengthValidator implements CommitValidationListener {
+public class MaxPathLengthValidator implements ValidationRule.Factory {
 
   public static AbstractModule module() {
     return new AbstractModule() {
 
       @Override
       protected void configure() {
-        DynamicSet.bind(binder(), CommitValidationListener.class).to(MaxPathLengthValidator.class);
+        DynamicSet.bind(binder(), ValidationRule.Factory.class).to(MaxPathLengthValidator.class);
         bind(ProjectConfigEntry.class)
             .annotatedWith(Exports.named(KEY_MAX_PATH_LENGTH))
             .toInstance(
@@ -60,66 +46,47 @@ public class MaxPathLengthValidator implements CommitValidationListener {
 
   public static final String KEY_MAX_PATH_LENGTH = "maxPathLength";
 
-  private final String pluginName;
-  private final PluginConfigFactory cfgFactory;
-  private final GitRepositoryManager repoManager;
-  private final ValidatorConfig validatorConfig;
-
-  @Inject
-  MaxPathLengthValidator(
-      @PluginName String pluginName,
-      PluginConfigFactory cfgFactory,
-      GitRepositoryManager repoManager,
-      ValidatorConfig validatorConfig) {
-    this.pluginName = pluginName;
-    this.cfgFactory = cfgFactory;
-    this.repoManager = repoManager;
-    this.validatorConfig = validatorConfig;
-  }
-
   static boolean isActive(PluginConfig cfg) {
     return cfg.getInt(KEY_MAX_PATH_LENGTH, 0) > 0;
   }
 
   @Override
-  public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
-      throws CommitValidationException {
-    try {
-      PluginConfig cfg =
-          cfgFactory.getFromProjectConfigWithInheritance(
-              receiveEvent.project.getNameKey(), pluginName);
-      if (isActive(cfg)
-          && validatorConfig.isEnabled(
-              receiveEvent.user,
-              receiveEvent.getProjectNameKey(),
-              receiveEvent.getRefName(),
-              KEY_MAX_PATH_LENGTH,
-              receiveEvent.pushOptions)) {
-        int maxPathLength = cfg.getInt(KEY_MAX_PATH_LENGTH, 0);
-        try (Repository repo = repoManager.openRepository(receiveEvent.project.getNameKey())) {
-          List<CommitValidationMessage> messages =
-              performValidation(repo, receiveEvent.commit, receiveEvent.revWalk, maxPathLength);
-          if (!messages.isEmpty()) {
-            throw new CommitValidationException(
-                "contains files with too long paths (max path length: " + maxPathLength + ")",
-                messages);
-          }
-        }
-      }
-    } catch (NoSuchProjectException | IOException e) {
-      throw new CommitValidationException("failed to check for max file path length", e);
-    }
-    return Collections.emptyList();
+  public String getValidatorOp() {
+    return KEY_MAX_PATH_LENGTH;
+  }
+
+  @Override
+  public ValidationRule create(PluginConfig cfg) {
+    return isActive(cfg) ? new Rule(cfg.getInt(KEY_MAX_PATH_LENGTH, 0)) : null;
   }
 
   static List<CommitValidationMessage> performValidation(
-      Repository repo, RevCommit c, RevWalk revWalk, int maxPathLength) throws IOException {
-    List<CommitValidationMessage> messages = new LinkedList<>();
-    for (String file : CommitUtils.getChangedPaths(repo, c, revWalk)) {
-      if (file.length() > maxPathLength) {
-        messages.add(new CommitValidationMessage("path too long: " + file, true));
+      List<ChangedEntry> entries, int maxPathLength) {
+    return ValidationEngine.checkPaths(entries, new Rule(maxPathLength));
+  }
+
+  private static class Rule implements ValidationRule {
+    private final int maxPathLength;
+
+    Rule(int maxPathLength) {
+      this.maxPathLength = maxPathLength;
+    }
+
+    @Override
+    public String getRejectReason() {
+      return "contains files with too long paths (max path length: " + maxPathLength + ")";
+    }
+
+    @Override
+    public String getErrorReason() {
+      return "failed to check for max file path length";
+    }
+
+    @Override
+    public void checkPath(ChangedEntry entry, List<CommitValidationMessage> messages) {
+      if (entry.isFile() && entry.getPath().length() > maxPathLength) {
+        messages.add(new CommitValidationMessage("path too long: " + entry.getPath(), true));
       }
     }
-    return messages;
   }
 }
@@ -0,0 +1,110 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.gerrit.extensions.annotations.Exports;
+import com.google.gerrit.extensions.api.projects.ProjectConfigEntryType;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.ProjectConfigEntry;
+import com.google.gerrit.server.git.validators.CommitValidationMessage;
+import com.google.inject.AbstractModule;
+
+/**
+ * Limits of the number of validation messages of a commit. Once a limit is reached, the {@link
+ * ValidationEngine} stops checking further entries and appends a summary instead of the remaining
+ * messages, as the commit is going to be rejected anyway.
+ */
+public class MessageLimits {
+  public static final String KEY_MAX_MESSAGES = "maxValidationMessages";
+  public static final String KEY_MAX_MESSAGES_PER_VALIDATOR = "maxValidationMessagesPerValidator";
+
+  static final MessageLimits NONE = new MessageLimits(0, 0);
+
+  public static AbstractModule module() {
+    return new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(ProjectConfigEntry.class)
+            .annotatedWith(Exports.named(KEY_MAX_MESSAGES))
+            .toInstance(
+                new ProjectConfigEntry(
+                    "Max Validation Messages",
+                    null,
+                    ProjectConfigEntryType.INT,
+                    null,
+                    false,
+                    "Maximum number of validation messages reported for a commit. Once it is "
+                        + "reached, the remaining files are not checked anymore. 0 means no "
+                        + "limit."));
+        bind(ProjectConfigEntry.class)
+            .annotatedWith(Exports.named(KEY_MAX_MESSAGES_PER_VALIDATOR))
+            .toInstance(
+                new ProjectConfigEntry(
+                    "Max Validation Messages Per Validator",
+                    null,
+                    ProjectConfigEntryType.INT,
+                    null,
+                    false,
+                    "Maximum number of validation messages reported by each validator for a "
+                        + "commit. Once it is reached, the validator does not check the remaining "
+                        + "files anymore. 0 means no limit."));
+      }
+    };
+  }
+
+  static MessageLimits fromConfig(PluginConfig cfg) {
+    return new MessageLimits(
+        Math.max(0, cfg.getInt(KEY_MAX_MESSAGES, 0)),
+        Math.max(0, cfg.getInt(KEY_MAX_MESSAGES_PER_VALIDATOR, 0)));
+  }
+
+  private final int maxMessages;
+  private final int maxMessagesPerRule;
+
+  MessageLimits(int maxMessages, int maxMessagesPerRule) {
+    this.maxMessages = maxMessages;
+    this.maxMessagesPerRule = maxMessagesPerRule;
+  }
+
+  /** @return the maximum number of messages of all rules, or 0 if there is no limit. */
+  int getMaxMessages() {
+    return maxMessages;
+  }
+
+  /** @return the maximum number of messages of a single rule, or 0 if there is no limit. */
+  int getMaxMessagesPerRule() {
+    return maxMessagesPerRule;
+  }
+
+  boolean isRuleLimitReached(int ruleMessages) {
+    return maxMessagesPerRule > 0 && ruleMessages >= maxMessagesPerRule;
+  }
+
+  boolean isTotalLimitReached(int totalMessages) {
+    return maxMessages > 0 && totalMessages >= maxMessages;
+  }
+
+  /** Summary which replaces the messages of a rule beyond the limits. */
+  static CommitValidationMessage summary(int dropped, boolean stoppedEarly) {
+    StringBuilder msg = new StringBuilder("... and ");
+    if (stoppedEarly) {
+      msg.append(dropped > 0 ? "at least " + dropped + " more" : "possibly more")
+          .append(", the remaining files were not checked");
+    } else {
+      msg.append(dropped).append(" more");
+    }
+    return new CommitValidationMessage(msg.toString(), true);
+  }
+}
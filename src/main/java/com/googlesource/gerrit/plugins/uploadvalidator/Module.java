@@ -25,6 +25,12 @@ public class Module extends AbstractModule {
   protected void configure() {
     install(new PatternCacheModule());
     install(ContentTypeUtil.module());
+    install(ChangedEntriesCache.module());
+    install(TreeNameIndexCache.module());
+    install(ValidationPlanCache.module());
+    install(ValidationResultCache.module());
+    install(ValidationExecutor.module());
+    install(ValidationEngine.module());
 
     install(FooterValidator.module());
     install(MaxPathLengthValidator.module());
@@ -38,9 +44,12 @@ public class Module extends AbstractModule {
     install(ContentTypeValidator.module());
     install(DuplicatePathnameValidator.module());
     install(ValidatorConfig.module());
+    install(MessageLimits.module());
+    install(TimeBudget.module());
 
     bind(ConfigFactory.class).to(PluginConfigWithInheritanceFactory.class).in(Scopes.SINGLETON);
 
     DynamicSet.bind(binder(), PluginPushOption.class).to(SkipValidationPushOption.class);
+    DynamicSet.bind(binder(), PluginPushOption.class).to(TracePushOption.class);
   }
 }
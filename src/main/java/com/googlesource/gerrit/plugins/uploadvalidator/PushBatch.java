@@ -0,0 +1,183 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.server.git.validators.CommitValidationException;
+import com.google.gerrit.server.git.validators.CommitValidationMessage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * The new commits of a push, which are validated concurrently ahead of the per-commit calls of the
+ * {@link ValidationEngine}.
+ *
+ * <p>The executor is shared with the other pushes, so only a window of commits following the last
+ * taken commit is submitted to it at any time. A commit which did not start yet when it is taken
+ * is validated by the caller instead. Once the push ends before all commits were taken, e.g.
+ * because one of them was rejected, the batch is {@link #cancel cancelled} and the commits which
+ * did not start yet are skipped.
+ */
+class PushBatch {
+  static final PushBatch EMPTY =
+      new PushBatch(ImmutableList.of(), ImmutableList.of(), id -> null, Runnable::run, 0);
+
+  /** Validates a single commit of the batch. */
+  @FunctionalInterface
+  interface Validation {
+    ImmutableListMultimap<ValidationRule, CommitValidationMessage> validate(ObjectId commit)
+        throws IOException, CommitValidationException;
+  }
+
+  /** The validation of a commit, which is run either on the executor or by the caller. */
+  private static class Task {
+    final FutureTask<ImmutableListMultimap<ValidationRule, CommitValidationMessage>> future;
+    final AtomicBoolean claimed = new AtomicBoolean();
+
+    Task(Validation validation, ObjectId commit) {
+      future =
+          new FutureTask<>(
+              () -> {
+                if (!claimed.compareAndSet(false, true)) {
+                  throw new CancellationException();
+                }
+                return validation.validate(commit);
+              });
+    }
+  }
+
+  private final ImmutableList<ValidationRule> rules;
+  private final ImmutableList<ObjectId> commits;
+  private final Map<ObjectId, Integer> positions = new HashMap<>();
+  private final Validation validation;
+  private final Executor executor;
+  private final int window;
+
+  /** The submitted tasks which were not taken yet, guarded by {@code this}. */
+  private final Map<ObjectId, Task> tasks = new HashMap<>();
+  /** The position of the next commit to submit, guarded by {@code this}. */
+  private int next;
+
+  PushBatch(
+      List<ValidationRule> rules,
+      List<ObjectId> commits,
+      Validation validation,
+      Executor executor,
+      int window) {
+    this.rules = ImmutableList.copyOf(rules);
+    this.commits = ImmutableList.copyOf(commits);
+    for (int i = 0; i < this.commits.size(); i++) {
+      positions.put(this.commits.get(i), i);
+    }
+    this.validation = validation;
+    this.executor = executor;
+    this.window = window;
+  }
+
+  /** Submits the first commits of the batch. */
+  synchronized void start() {
+    submitUntil(window);
+  }
+
+  /** @return the rules the commits of the batch are validated with. */
+  ImmutableList<ValidationRule> getRules() {
+    return rules;
+  }
+
+  synchronized boolean isDone() {
+    return next >= commits.size() && tasks.isEmpty();
+  }
+
+  /** Drops the results which were not taken yet and skips the commits which are not started. */
+  synchronized void cancel() {
+    for (Task task : tasks.values()) {
+      task.claimed.set(true);
+    }
+    tasks.clear();
+    next = commits.size();
+  }
+
+  /**
+   * Takes the validation of a commit from the batch and submits the commits of the window which
+   * follows it. Gerrit validates the commits in order, so the commits before it are not asked for
+   * anymore and are dropped.
+   *
+   * @return the validation messages of the commit, or {@code null} if the commit must be validated
+   *     by the caller, because it is not part of the batch, did not start yet or the batch was
+   *     cancelled.
+   * @throws CommitValidationException if one of the rules could not be evaluated.
+   */
+  @Nullable
+  ImmutableListMultimap<ValidationRule, CommitValidationMessage> take(ObjectId commit)
+      throws CommitValidationException {
+    Task task;
+    synchronized (this) {
+      Integer position = positions.get(commit);
+      if (position == null) {
+        return null;
+      }
+      task = tasks.remove(commit);
+      for (Iterator<Map.Entry<ObjectId, Task>> it = tasks.entrySet().iterator(); it.hasNext(); ) {
+        Map.Entry<ObjectId, Task> e = it.next();
+        if (positions.get(e.getKey()) < position) {
+          e.getValue().claimed.set(true);
+          it.remove();
+        }
+      }
+      next = Math.max(next, position + 1);
+      submitUntil(position + 1 + window);
+    }
+    if (task == null || task.claimed.compareAndSet(false, true)) {
+      return null;
+    }
+    try {
+      return task.future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CommitValidationException("interrupted while validating commit", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), CommitValidationException.class);
+      throw new CommitValidationException("failed to validate commit", e.getCause());
+    }
+  }
+
+  private void submitUntil(int end) {
+    for (; next < Math.min(end, commits.size()); next++) {
+      ObjectId commit = commits.get(next);
+      Task task = new Task(validation, commit);
+      try {
+        executor.execute(task.future);
+      } catch (RejectedExecutionException e) {
+        // The pool is shut down, the remaining commits are validated one by one.
+        next = commits.size();
+        return;
+      }
+      tasks.put(commit, task);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.extensions.annotations.Exports;
+import com.google.gerrit.extensions.api.projects.ProjectConfigEntryType;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.ProjectConfigEntry;
+import com.google.inject.AbstractModule;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits of the wall-clock time of the validation of a commit and of all commits of a push. Once a
+ * limit is reached, the {@link ValidationEngine} stops checking further entries. The commit is then
+ * either rejected or accepted with a warning, depending on the configured action.
+ */
+public class TimeBudget {
+  public static final String KEY_MAX_VALIDATION_SECONDS = "maxValidationSeconds";
+  public static final String KEY_MAX_PUSH_VALIDATION_SECONDS = "maxPushValidationSeconds";
+  public static final String KEY_VALIDATION_TIMEOUT_ACTION = "validationTimeoutAction";
+
+  static final String REJECT = "reject";
+  static final String WARN = "warn";
+
+  static final TimeBudget NONE = new TimeBudget(0, 0, false);
+
+  public static AbstractModule module() {
+    return new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(ProjectConfigEntry.class)
+            .annotatedWith(Exports.named(KEY_MAX_VALIDATION_SECONDS))
+            .toInstance(
+                new ProjectConfigEntry(
+                    "Max Validation Seconds",
+                    null,
+                    ProjectConfigEntryType.INT,
+                    null,
+                    false,
+                    "Maximum number of seconds the validation of a commit may take. Once it is "
+                        + "reached, the remaining files are not checked anymore. 0 means no "
+                        + "limit."));
+        bind(ProjectConfigEntry.class)
+            .annotatedWith(Exports.named(KEY_MAX_PUSH_VALIDATION_SECONDS))
+            .toInstance(
+                new ProjectConfigEntry(
+                    "Max Push Validation Seconds",
+                    null,
+                    ProjectConfigEntryType.INT,
+                    null,
+                    false,
+                    "Maximum number of seconds the validation of all commits of a push may take. "
+                        + "0 means no limit."));
+        bind(ProjectConfigEntry.class)
+            .annotatedWith(Exports.named(KEY_VALIDATION_TIMEOUT_ACTION))
+            .toInstance(
+                new ProjectConfigEntry(
+                    "Validation Timeout Action",
+                    REJECT,
+                    ProjectConfigEntryType.LIST,
+                    ImmutableList.of(REJECT, WARN),
+                    false,
+                    "Whether a commit whose validation took too long is rejected or accepted "
+                        + "with a warning."));
+      }
+    };
+  }
+
+  static TimeBudget fromConfig(PluginConfig cfg) {
+    return new TimeBudget(
+        Math.max(0, cfg.getInt(KEY_MAX_VALIDATION_SECONDS, 0)),
+        Math.max(0, cfg.getInt(KEY_MAX_PUSH_VALIDATION_SECONDS, 0)),
+        WARN.equalsIgnoreCase(cfg.getString(KEY_VALIDATION_TIMEOUT_ACTION, REJECT)));
+  }
+
+  private final int maxSeconds;
+  private final int maxPushSeconds;
+  private final boolean warnOnTimeout;
+
+  TimeBudget(int maxSeconds, int maxPushSeconds, boolean warnOnTimeout) {
+    this.maxSeconds = maxSeconds;
+    this.maxPushSeconds = maxPushSeconds;
+    this.warnOnTimeout = warnOnTimeout;
+  }
+
+  /** @return whether there is any limit. */
+  boolean isLimited() {
+    return maxSeconds > 0 || maxPushSeconds > 0;
+  }
+
+  /** @return whether a commit whose validation took too long is accepted with a warning. */
+  boolean isWarnOnTimeout() {
+    return warnOnTimeout;
+  }
+
+  /**
+   * Starts the deadline of a commit whose validation starts now.
+   *
+   * @param pushStart the start of the validation of the push in {@link System#nanoTime()}.
+   */
+  Deadline start(long pushStart) {
+    if (!isLimited()) {
+      return Deadline.NONE;
+    }
+    long now = System.nanoTime();
+    long budget = Long.MAX_VALUE;
+    if (maxSeconds > 0) {
+      budget = TimeUnit.SECONDS.toNanos(maxSeconds);
+    }
+    if (maxPushSeconds > 0) {
+      budget = Math.min(budget, TimeUnit.SECONDS.toNanos(maxPushSeconds) - (now - pushStart));
+    }
+    return new Deadline(now, budget);
+  }
+}
@@ -0,0 +1,219 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.server.cache.serialize.CacheSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+
+/**
+ * The entries of a single tree, looked up by their case-folded name.
+ *
+ * <p>Trees are immutable, hence the index of a tree can be shared by all commits which contain it,
+ * see {@link TreeNameIndexCache}. The folded names are kept in a sorted array and looked up by
+ * binary search. Several entries of a tree may fold to the same name; they are adjacent in the
+ * array and flagged as collisions, all of them are returned by a lookup.
+ */
+class TreeNameIndex {
+  private static final byte TREE = 1;
+  private static final byte COLLISION = 2;
+  private static final byte NAME_IS_FOLDED = 4;
+
+  /** An entry of the indexed tree. */
+  static class Entry {
+    private final String name;
+    private final ObjectId id;
+    private final boolean tree;
+
+    Entry(String name, ObjectId id, boolean tree) {
+      this.name = name;
+      this.id = id;
+      this.tree = tree;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    ObjectId getObjectId() {
+      return id;
+    }
+
+    boolean isTree() {
+      return tree;
+    }
+  }
+
+  /** Reads the passed tree and folds the names of its entries with the passed locale. */
+  static TreeNameIndex read(ObjectReader reader, ObjectId treeId, Locale locale)
+      throws IOException {
+    List<String> folded = new ArrayList<>();
+    List<Entry> entries = new ArrayList<>();
+    CanonicalTreeParser parser = new CanonicalTreeParser(null, reader, treeId);
+    for (; !parser.eof(); parser.next()) {
+      String name = parser.getEntryPathString();
+      folded.add(name.toLowerCase(locale));
+      entries.add(
+          new Entry(
+              name, parser.getEntryObjectId(), FileMode.TREE.equals(parser.getEntryRawMode())));
+    }
+    // The sort is stable, entries which fold to the same name stay in tree order.
+    Integer[] order = new Integer[entries.size()];
+    Arrays.setAll(order, i -> i);
+    Arrays.sort(order, Comparator.comparing(folded::get));
+
+    int n = order.length;
+    String[] foldedNames = new String[n];
+    String[] names = new String[n];
+    byte[] flags = new byte[n];
+    byte[] ids = new byte[n * Constants.OBJECT_ID_LENGTH];
+    for (int i = 0; i < n; i++) {
+      Entry entry = entries.get(order[i]);
+      foldedNames[i] = folded.get(order[i]);
+      if (entry.getName().equals(foldedNames[i])) {
+        flags[i] |= NAME_IS_FOLDED;
+      } else {
+        names[i] = entry.getName();
+      }
+      if (entry.isTree()) {
+        flags[i] |= TREE;
+      }
+      if (i > 0 && foldedNames[i].equals(foldedNames[i - 1])) {
+        flags[i] |= COLLISION;
+        flags[i - 1] |= COLLISION;
+      }
+      entry.getObjectId().copyRawTo(ids, i * Constants.OBJECT_ID_LENGTH);
+    }
+    return new TreeNameIndex(foldedNames, names, flags, ids);
+  }
+
+  private final String[] foldedNames;
+  private final String[] names;
+  private final byte[] flags;
+  private final byte[] ids;
+
+  private TreeNameIndex(String[] foldedNames, String[] names, byte[] flags, byte[] ids) {
+    this.foldedNames = foldedNames;
+    this.names = names;
+    this.flags = flags;
+    this.ids = ids;
+  }
+
+  /** @return the entries whose name folds to the passed name. */
+  ImmutableList<Entry> get(String foldedName) {
+    int i = Arrays.binarySearch(foldedNames, foldedName);
+    if (i < 0) {
+      return ImmutableList.of();
+    }
+    if ((flags[i] & COLLISION) == 0) {
+      return ImmutableList.of(entry(i));
+    }
+    int first = i;
+    while (first > 0 && foldedNames[first - 1].equals(foldedName)) {
+      first--;
+    }
+    ImmutableList.Builder<Entry> entries = ImmutableList.builder();
+    for (int j = first; j < foldedNames.length && foldedNames[j].equals(foldedName); j++) {
+      entries.add(entry(j));
+    }
+    return entries.build();
+  }
+
+  private Entry entry(int i) {
+    return new Entry(
+        (flags[i] & NAME_IS_FOLDED) != 0 ? foldedNames[i] : names[i],
+        ObjectId.fromRaw(ids, i * Constants.OBJECT_ID_LENGTH),
+        (flags[i] & TREE) != 0);
+  }
+
+  int size() {
+    return foldedNames.length;
+  }
+
+  /** Serializes the index for the persistent {@link TreeNameIndexCache}. */
+  enum Serializer implements CacheSerializer<TreeNameIndex> {
+    INSTANCE;
+
+    @Override
+    public byte[] serialize(TreeNameIndex index) {
+      ByteArrayOutputStream buf = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(buf)) {
+        out.writeInt(index.size());
+        for (int i = 0; i < index.size(); i++) {
+          out.writeByte(index.flags[i]);
+          writeString(out, index.foldedNames[i]);
+          if ((index.flags[i] & NAME_IS_FOLDED) == 0) {
+            writeString(out, index.names[i]);
+          }
+        }
+        out.write(index.ids);
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to serialize tree name index", e);
+      }
+      return buf.toByteArray();
+    }
+
+    @Override
+    public TreeNameIndex deserialize(byte[] in) {
+      try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(in))) {
+        int n = data.readInt();
+        String[] foldedNames = new String[n];
+        String[] names = new String[n];
+        byte[] flags = new byte[n];
+        for (int i = 0; i < n; i++) {
+          flags[i] = data.readByte();
+          foldedNames[i] = readString(data);
+          if ((flags[i] & NAME_IS_FOLDED) == 0) {
+            names[i] = readString(data);
+          }
+        }
+        byte[] ids = new byte[n * Constants.OBJECT_ID_LENGTH];
+        data.readFully(ids);
+        return new TreeNameIndex(foldedNames, names, flags, ids);
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to deserialize tree name index", e);
+      }
+    }
+
+    // Unlike writeUTF, a length prefixed array is not limited to 65535 bytes per name.
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+      byte[] bytes = s.getBytes(UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      return new String(bytes, UTF_8);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.serialize.StringCacheSerializer;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+
+/**
+ * Holds the {@link TreeNameIndex} of recently checked trees, so that the listing of a large folder
+ * is read and case-folded once instead of on every push which touches the folder.
+ *
+ * <p>The index of a tree only depends on the tree ObjectId and the locale used for folding, which
+ * form the key of the cache. As trees are immutable, cached indexes never become stale and are only
+ * evicted, hence the cache is persisted and survives restarts. In memory it is weighed by the
+ * number of indexed entries.
+ */
+@Singleton
+public class TreeNameIndexCache {
+  static final String CACHE_NAME = "treeNameIndex";
+
+  public static CacheModule module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        persist(CACHE_NAME, String.class, TreeNameIndex.class)
+            .version(1)
+            .keySerializer(StringCacheSerializer.INSTANCE)
+            .valueSerializer(TreeNameIndex.Serializer.INSTANCE)
+            .maximumWeight(1_000_000)
+            .diskLimit(256 * 1024 * 1024)
+            .weigher(EntryCountWeigher.class);
+        bind(TreeNameIndexCache.class);
+      }
+    };
+  }
+
+  static class EntryCountWeigher implements Weigher<String, TreeNameIndex> {
+    @Override
+    public int weigh(String key, TreeNameIndex value) {
+      return 1 + value.size();
+    }
+  }
+
+  static String key(Locale locale, ObjectId treeId) {
+    return locale.toLanguageTag() + ':' + treeId.name();
+  }
+
+  private final Cache<String, TreeNameIndex> cache;
+
+  @Inject
+  TreeNameIndexCache(@Named(CACHE_NAME) Cache<String, TreeNameIndex> cache) {
+    this.cache = cache;
+  }
+
+  /** Returns the index of the passed tree, reading the tree if it is not cached yet. */
+  TreeNameIndex get(ObjectReader reader, ObjectId treeId, Locale locale) throws IOException {
+    try {
+      return cache.get(key(locale, treeId), () -> TreeNameIndex.read(reader, treeId, locale));
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      throw new IOException(e.getCause());
+    }
+  }
+}
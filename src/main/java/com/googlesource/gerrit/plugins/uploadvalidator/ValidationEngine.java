@@ -0,0 +1,823 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.hash.HashCode;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.validators.CommitValidationException;
+import com.google.gerrit.server.git.validators.CommitValidationListener;
+import com.google.gerrit.server.git.validators.CommitValidationMessage;
+import com.google.gerrit.server.git.validators.ValidationMessage;
+import com.google.gerrit.server.patch.DiffNotAvailableException;
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlesource.gerrit.plugins.uploadvalidator.ValidationMetrics.Phase;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+/**
+ * Single {@link CommitValidationListener} which runs all configured {@link ValidationRule}s on a
+ * received commit.
+ *
+ * <p>The rules are taken from the {@link ValidationPlan} of the project, which is only compiled
+ * when the config of the project changes. The repository is opened once per commit. The changed
+ * entries are walked once and every changed file is opened once, no matter how many rules inspect
+ * it. The content of small files is shared within a push through a {@link BlobContentCache}, and
+ * files which passed a content check in a previous push are skipped through the {@link
+ * ValidationResultCache}. The files of large commits may be validated in parallel on the {@link
+ * ValidationExecutor}. With the executor, the new commits of a push are also validated
+ * concurrently in a {@link PushBatch}. The time spent per phase and per validator is reported
+ * through the {@link ValidationMetrics}, and to the user if the {@link TracePushOption} is set.
+ * Once a commit or a push exceeds its {@link TimeBudget}, the remaining entries are not checked
+ * anymore.
+ */
+@Singleton
+public class ValidationEngine implements CommitValidationListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Minimum number of changed entries for which it is worth to use another thread. */
+  @VisibleForTesting static final int MIN_ENTRIES_PER_TASK = 64;
+
+  /** Maximum number of new commits of a push which are listed for its batch. */
+  private static final int MAX_BATCH_COMMITS = 10_000;
+
+  /** Key of the message the engine reports itself if a validation exceeded its time budget. */
+  private static final ValidationRule TIMEOUT =
+      new ValidationRule() {
+        @Override
+        public String getRejectReason() {
+          return "validation took too long";
+        }
+
+        @Override
+        public String getErrorReason() {
+          return getRejectReason();
+        }
+      };
+
+  public static AbstractModule module() {
+    return new AbstractModule() {
+      @Override
+      protected void configure() {
+        DynamicSet.setOf(binder(), ValidationRule.Factory.class);
+        DynamicSet.bind(binder(), CommitValidationListener.class).to(ValidationEngine.class);
+      }
+    };
+  }
+
+  private final ValidationPlanCache planCache;
+  private final GitRepositoryManager repoManager;
+  private final ChangedEntriesCache changedEntriesCache;
+  private final ValidationResultCache resultCache;
+  private final ValidationExecutor validationExecutor;
+  private final ValidationMetrics metrics;
+  private final String pluginName;
+  /**
+   * The batches of the pushes which are in progress, keyed by the identity of the command of the
+   * push, so that a retry of a push starts its own batch. A batch which is dropped is cancelled.
+   */
+  private final Cache<ReceiveCommand, PushBatch> batches =
+      CacheBuilder.newBuilder()
+          .weakKeys()
+          .expireAfterWrite(Duration.ofMinutes(10))
+          .removalListener(
+              (RemovalNotification<ReceiveCommand, PushBatch> n) -> n.getValue().cancel())
+          .build();
+  /**
+   * Start of the validation of each push in {@link System#nanoTime()}, keyed by the identity of the
+   * command of the push like the batches, so that a retry of a push gets its own time budget.
+   */
+  private final Cache<ReceiveCommand, Long> pushStarts =
+      CacheBuilder.newBuilder().weakKeys().expireAfterWrite(Duration.ofMinutes(10)).build();
+  /**
+   * The content of the blobs of each push, keyed by the identity of the command of the push like
+   * the batches. The content is dropped with the command once the push is over.
+   */
+  private final Cache<ReceiveCommand, BlobContentCache> pushContents =
+      CacheBuilder.newBuilder().weakKeys().expireAfterAccess(Duration.ofMinutes(10)).build();
+
+  @Inject
+  ValidationEngine(
+      ValidationPlanCache planCache,
+      GitRepositoryManager repoManager,
+      ChangedEntriesCache changedEntriesCache,
+      ValidationResultCache resultCache,
+      ValidationExecutor validationExecutor,
+      ValidationMetrics metrics,
+      @PluginName String pluginName) {
+    this.planCache = planCache;
+    this.repoManager = repoManager;
+    this.changedEntriesCache = changedEntriesCache;
+    this.resultCache = resultCache;
+    this.validationExecutor = validationExecutor;
+    this.metrics = metrics;
+    this.pluginName = pluginName;
+  }
+
+  @Override
+  public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
+      throws CommitValidationException {
+    Timer0.Context commitTimer = metrics.startCommit();
+    try {
+      return validate(receiveEvent);
+    } catch (CommitValidationException e) {
+      // Gerrit rejects the command and does not ask for its remaining commits.
+      if (receiveEvent.command != null) {
+        endPush(receiveEvent.command);
+      }
+      throw e;
+    } finally {
+      commitTimer.close();
+    }
+  }
+
+  private List<CommitValidationMessage> validate(CommitReceivedEvent receiveEvent)
+      throws CommitValidationException {
+    Project.NameKey project = receiveEvent.getProjectNameKey();
+    ValidationTrace trace =
+        receiveEvent.pushOptions.containsKey(pluginName + "~" + TracePushOption.NAME)
+            ? new ValidationTrace(pluginName)
+            : null;
+    ValidationPlan plan;
+    long start = System.nanoTime();
+    try {
+      plan = planCache.get(project);
+    } catch (ExecutionException e) {
+      logger.atWarning().withCause(e).log("cannot load config of project %s", project.get());
+      throw new CommitValidationException("failed to load validation config", e);
+    }
+    long configNanos = System.nanoTime() - start;
+    metrics.recordPhase(Phase.CONFIG_LOAD, configNanos);
+    if (trace != null) {
+      trace.addPhase(Phase.CONFIG_LOAD, configNanos);
+    }
+    List<ValidationRule> rules = new ArrayList<>();
+    List<String> ops = new ArrayList<>();
+    for (Map.Entry<String, ValidationRule> e : plan.getRules().entrySet()) {
+      if (plan.isEnabled(
+          receiveEvent.user, receiveEvent.getRefName(), e.getKey(), receiveEvent.pushOptions)) {
+        rules.add(e.getValue());
+        ops.add(e.getKey());
+      }
+    }
+    if (rules.isEmpty()) {
+      return Collections.emptyList();
+    }
+    ValidationResultCache.Results results = resultCache.forRules(plan, ops);
+    long pushStart = plan.getTimeBudget().isLimited() ? pushStart(receiveEvent, start) : start;
+
+    // A traced commit is validated on the receive thread, to measure it on its own.
+    ImmutableListMultimap<ValidationRule, CommitValidationMessage> messages =
+        trace == null ? takeFromBatch(receiveEvent, ops, rules, plan, pushStart, results) : null;
+    if (messages == null) {
+      try (Repository repo = repoManager.openRepository(project)) {
+        Deadline deadline = plan.getTimeBudget().start(pushStart);
+        CommitContext ctx =
+            newCommitContext(
+                project,
+                repo,
+                receiveEvent.revWalk,
+                receiveEvent.commit,
+                blobContentCache(receiveEvent));
+        ctx.setDeadline(deadline);
+        if (trace != null) {
+          ctx.traceEntries();
+        }
+        messages =
+            validate(
+                ctx,
+                rules,
+                plan.getLimits(),
+                results,
+                validationExecutor.get(),
+                validationExecutor.getThreads());
+        recordRules(ctx, ops, rules, messages);
+        messages = addTimeout(ctx, plan.getTimeBudget(), messages);
+        if (trace != null) {
+          trace.addCommit(ctx, ops, rules, messages);
+        }
+      } catch (IOException e) {
+        throw new CommitValidationException("failed to validate commit", e);
+      }
+    }
+
+    List<CommitValidationMessage> traceMessages =
+        trace != null ? trace.report(receiveEvent.commit.name()) : Collections.emptyList();
+    List<String> reasons = new ArrayList<>();
+    for (ValidationRule rule : rules) {
+      if (messages.containsKey(rule)) {
+        reasons.add(rule.getRejectReason());
+      }
+    }
+    if (messages.get(TIMEOUT).stream().anyMatch(CommitValidationMessage::isError)) {
+      reasons.add(TIMEOUT.getRejectReason());
+    }
+    if (!reasons.isEmpty()) {
+      List<CommitValidationMessage> all = new ArrayList<>(messages.values());
+      all.addAll(traceMessages);
+      throw new CommitValidationException(Joiner.on(", ").join(reasons), all);
+    }
+    if (messages.containsKey(TIMEOUT)) {
+      List<CommitValidationMessage> warnings = new ArrayList<>(messages.get(TIMEOUT));
+      warnings.addAll(traceMessages);
+      return warnings;
+    }
+    return traceMessages;
+  }
+
+  /**
+   * @param start the start of the validation of the commit in {@link System#nanoTime()}.
+   * @return the start of the validation of the first commit of the push.
+   */
+  private long pushStart(CommitReceivedEvent receiveEvent, long start) {
+    if (receiveEvent.command == null) {
+      return start;
+    }
+    try {
+      return pushStarts.get(receiveEvent.command, () -> start);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** @return the content cache of the push of the commit. */
+  private BlobContentCache blobContentCache(CommitReceivedEvent receiveEvent) {
+    if (receiveEvent.command == null) {
+      return BlobContentCache.forPush();
+    }
+    try {
+      return pushContents.get(receiveEvent.command, BlobContentCache::forPush);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Drops the state of a push which Gerrit does not ask for any more commits of. */
+  private void endPush(ReceiveCommand command) {
+    batches.invalidate(command);
+    pushStarts.invalidate(command);
+    pushContents.invalidate(command);
+  }
+
+  /**
+   * Adds a message of the engine to the messages of the commit if its validation was stopped at the
+   * deadline. Depending on the {@link TimeBudget}, the message rejects the commit or only warns
+   * about the files which were not checked.
+   */
+  private static ImmutableListMultimap<ValidationRule, CommitValidationMessage> addTimeout(
+      CommitContext ctx,
+      TimeBudget budget,
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> messages) {
+    if (!ctx.getDeadline().hasExpired()) {
+      return messages;
+    }
+    logger.atWarning().log(
+        "%s: validation in project %s exceeded its time budget",
+        ctx.getCommit().name(), ctx.getProject().get());
+    String text =
+        String.format(
+            "validation of commit %s took longer than allowed, its remaining files were not"
+                + " checked",
+            ctx.getCommit().abbreviate(7).name());
+    CommitValidationMessage message =
+        budget.isWarnOnTimeout()
+            ? new CommitValidationMessage(text, ValidationMessage.Type.WARNING)
+            : new CommitValidationMessage(text, true);
+    return ImmutableListMultimap.<ValidationRule, CommitValidationMessage>builder()
+        .putAll(messages)
+        .put(TIMEOUT, message)
+        .build();
+  }
+
+  /**
+   * Returns the result of the commit from the batch of its push. The batch is started by the first
+   * commit of the push and validates the following new commits of the push concurrently.
+   *
+   * @return the validation messages of the commit, or {@code null} if the commit must be validated
+   *     by the caller.
+   */
+  @Nullable
+  private ImmutableListMultimap<ValidationRule, CommitValidationMessage> takeFromBatch(
+      CommitReceivedEvent receiveEvent,
+      List<String> ops,
+      List<ValidationRule> rules,
+      ValidationPlan plan,
+      long pushStart,
+      ValidationResultCache.Results results)
+      throws CommitValidationException {
+    ExecutorService executor = validationExecutor.get();
+    ReceiveCommand command = receiveEvent.command;
+    if (executor == null || command == null) {
+      return null;
+    }
+    PushBatch batch;
+    try {
+      batch =
+          batches.get(
+              command,
+              () -> startBatch(receiveEvent, ops, rules, plan, pushStart, results, executor));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+    if (!batch.getRules().equals(rules)) {
+      return null;
+    }
+    ImmutableListMultimap<ValidationRule, CommitValidationMessage> messages;
+    try {
+      messages = batch.take(receiveEvent.commit);
+    } finally {
+      if (batch.isDone()) {
+        // The last commit of the push is validated.
+        endPush(command);
+      }
+    }
+    return messages;
+  }
+
+  private PushBatch startBatch(
+      CommitReceivedEvent receiveEvent,
+      List<String> ops,
+      List<ValidationRule> rules,
+      ValidationPlan plan,
+      long pushStart,
+      ValidationResultCache.Results results,
+      ExecutorService executor) {
+    Project.NameKey project = receiveEvent.getProjectNameKey();
+    ImmutableList<ObjectId> commits;
+    try (Repository repo = repoManager.openRepository(project)) {
+      commits = findNewCommits(repo, receiveEvent.command);
+    } catch (IOException e) {
+      // The commits may not be visible to other readers yet, validate them one by one.
+      logger.atFine().withCause(e).log("cannot list new commits of %s", project.get());
+      return PushBatch.EMPTY;
+    }
+    if (commits.size() < 2) {
+      return PushBatch.EMPTY;
+    }
+
+    BlobContentCache blobs = blobContentCache(receiveEvent);
+    // The pool is shared with the per-file tasks of the other pushes, so the push only keeps as
+    // many commits in flight as there are threads.
+    PushBatch batch =
+        new PushBatch(
+            rules,
+            commits,
+            id -> {
+              try (Repository repo = repoManager.openRepository(project)) {
+                return validate(project, repo, id, ops, rules, plan, pushStart, results, blobs);
+              }
+            },
+            executor,
+            validationExecutor.getThreads());
+    batch.start();
+    return batch;
+  }
+
+  private ImmutableListMultimap<ValidationRule, CommitValidationMessage> validate(
+      Project.NameKey project,
+      Repository repo,
+      ObjectId id,
+      List<String> ops,
+      List<ValidationRule> rules,
+      ValidationPlan plan,
+      long pushStart,
+      ValidationResultCache.Results results,
+      BlobContentCache blobs)
+      throws IOException, CommitValidationException {
+    try (RevWalk rw = new RevWalk(repo)) {
+      Deadline deadline = plan.getTimeBudget().start(pushStart);
+      RevCommit c = rw.parseCommit(id);
+      CommitContext ctx = newCommitContext(project, repo, rw, c, blobs);
+      ctx.setDeadline(deadline);
+      // The commit is already validated on the pool, its files are not split up any further.
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> messages =
+          validate(ctx, rules, plan.getLimits(), results, null, 1);
+      recordRules(ctx, ops, rules, messages);
+      return addTimeout(ctx, plan.getTimeBudget(), messages);
+    }
+  }
+
+  private CommitContext newCommitContext(
+      Project.NameKey project, Repository repo, RevWalk rw, RevCommit c, BlobContentCache blobs)
+      throws IOException {
+    long start = System.nanoTime();
+    ImmutableList<ChangedEntry> entries = changedEntriesCache.get(repo, c, rw);
+    CommitContext ctx = new CommitContext(project, repo, rw, c, entries, blobs, metrics);
+    ctx.recordPhase(Phase.TREE_WALK, System.nanoTime() - start);
+    return ctx;
+  }
+
+  /**
+   * Reports the time spent by each of the rules and the messages they reported. The diff the rules
+   * fetch is reported as its own phase, it is not part of the time of the match phase.
+   */
+  private void recordRules(
+      CommitContext ctx,
+      List<String> ops,
+      List<ValidationRule> rules,
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> messages) {
+    long[] nanos = ctx.getRuleNanos();
+    long total = 0;
+    for (int i = 0; i < rules.size(); i++) {
+      metrics.recordValidator(ops.get(i), nanos[i], messages.get(rules.get(i)).size());
+      total += nanos[i];
+    }
+    ctx.recordPhase(Phase.MATCH, Math.max(0, total - ctx.getPhaseNanos(Phase.DIFF_FETCH)));
+  }
+
+  /**
+   * Lists the commits which are pushed by the command and are not yet reachable from any branch or
+   * tag, in the order in which they are validated by Gerrit, i.e. parents first.
+   */
+  @VisibleForTesting
+  static ImmutableList<ObjectId> findNewCommits(Repository repo, ReceiveCommand command)
+      throws IOException {
+    ImmutableList.Builder<ObjectId> commits = ImmutableList.builder();
+    try (RevWalk rw = new RevWalk(repo)) {
+      rw.sort(RevSort.TOPO);
+      rw.sort(RevSort.REVERSE, true);
+      rw.markStart(rw.parseCommit(command.getNewId()));
+      if (!ObjectId.zeroId().equals(command.getOldId())) {
+        rw.markUninteresting(rw.parseCommit(command.getOldId()));
+      }
+      // Only branches and tags are considered, as there may be far more change refs than new
+      // commits. A commit which is already part of another change is listed, but Gerrit does not
+      // ask for it and the batch drops it once a later commit is taken.
+      for (Ref ref : repo.getRefDatabase().getRefsByPrefix(Constants.R_HEADS, Constants.R_TAGS)) {
+        if (ref.getObjectId() == null) {
+          continue;
+        }
+        RevObject tip;
+        try {
+          tip = rw.peel(rw.parseAny(ref.getObjectId()));
+        } catch (MissingObjectException e) {
+          continue;
+        }
+        if (tip instanceof RevCommit) {
+          rw.markUninteresting((RevCommit) tip);
+        }
+      }
+      int n = 0;
+      for (RevCommit c : rw) {
+        if (++n > MAX_BATCH_COMMITS) {
+          break;
+        }
+        commits.add(c.copy());
+      }
+    }
+    return commits.build();
+  }
+
+  /** Runs the rules on the commit on the calling thread, see {@link #validate}. */
+  @VisibleForTesting
+  static ImmutableListMultimap<ValidationRule, CommitValidationMessage> validate(
+      CommitContext ctx, List<ValidationRule> rules) throws CommitValidationException {
+    return validate(ctx, rules, MessageLimits.NONE, null, 1);
+  }
+
+  /** Runs the rules on the commit without reusing previous results, see {@link #validate}. */
+  @VisibleForTesting
+  static ImmutableListMultimap<ValidationRule, CommitValidationMessage> validate(
+      CommitContext ctx,
+      List<ValidationRule> rules,
+      MessageLimits limits,
+      @Nullable ExecutorService executor,
+      int threads)
+      throws CommitValidationException {
+    return validate(ctx, rules, limits, null, executor, threads);
+  }
+
+  /**
+   * Runs the rules on the commit in a single pass over its changed entries.
+   *
+   * <p>Once a rule reported as many messages as allowed by the limits, it is not called for the
+   * remaining entries anymore. Once all rules together reached the limit, the remaining entries are
+   * not checked at all. The messages beyond the limits are replaced by a summary.
+   *
+   * <p>If an executor is passed and the rules inspect the content of a large number of files, the
+   * changed entries are split into consecutive ranges which are validated in parallel, each with
+   * its own {@link ObjectReader}. The messages of the ranges are concatenated in the order of the
+   * entries, so the result does not depend on the number of threads.
+   *
+   * <p>If results are passed, the content checks which a file passed before are skipped and the
+   * passed content checks are added to the results.
+   *
+   * <p>Once the deadline of the context is exceeded, the remaining checks are skipped as if all
+   * rules reached their limit, see {@link Deadline}.
+   *
+   * <p>The time spent by each of the rules is stored in the context, see {@link
+   * CommitContext#getRuleNanos()}.
+   *
+   * @return the validation messages reported by each of the rules.
+   * @throws CommitValidationException if one of the rules could not be evaluated.
+   */
+  @VisibleForTesting
+  static ImmutableListMultimap<ValidationRule, CommitValidationMessage> validate(
+      CommitContext ctx,
+      List<ValidationRule> rules,
+      MessageLimits limits,
+      @Nullable ValidationResultCache.Results results,
+      @Nullable ExecutorService executor,
+      int threads)
+      throws CommitValidationException {
+    Range result = new Range(rules.size());
+    try {
+      for (int i = 0; i < rules.size(); i++) {
+        ValidationRule rule = rules.get(i);
+        long start = System.nanoTime();
+        try {
+          rule.checkCommit(ctx, result.messages.get(i));
+        } catch (Deadline.ExceededException e) {
+          // The entries are not checked either, checkEntries finds the deadline expired.
+          Arrays.fill(result.stopped, true);
+          break;
+        } catch (IOException | ExecutionException | DiffNotAvailableException e) {
+          throw new RuleException(rule, e);
+        } finally {
+          result.nanos[i] += System.nanoTime() - start;
+        }
+      }
+      int[] reported = result.sizes();
+
+      List<ChangedEntry> entries = ctx.getEntries();
+      int tasks = 1;
+      if (executor != null && rules.stream().anyMatch(ValidationRule::inspectsContent)) {
+        tasks = Math.min(threads, entries.size() / MIN_ENTRIES_PER_TASK);
+      }
+      if (tasks > 1) {
+        checkEntriesInParallel(ctx, rules, limits, results, reported, executor, tasks, result);
+      } else {
+        result.append(
+            checkEntries(
+                ctx, ctx.getObjectReader(), rules, limits, results, reported, 0, entries.size()));
+      }
+    } catch (RuleException e) {
+      String reason = e.rule.getErrorReason();
+      logger.atWarning().withCause(e.getCause()).log("%s: %s", ctx.getCommit().name(), reason);
+      throw new CommitValidationException(reason, e.getCause());
+    }
+    ctx.setRuleNanos(result.nanos);
+    return result.build(rules, limits);
+  }
+
+  private static void checkEntriesInParallel(
+      CommitContext ctx,
+      List<ValidationRule> rules,
+      MessageLimits limits,
+      @Nullable ValidationResultCache.Results results,
+      int[] reported,
+      ExecutorService executor,
+      int tasks,
+      Range result)
+      throws RuleException, CommitValidationException {
+    List<ChangedEntry> entries = ctx.getEntries();
+    int n = entries.size();
+    List<Future<Range>> futures = new ArrayList<>(tasks - 1);
+    try {
+      for (int t = 1; t < tasks; t++) {
+        int from = t * n / tasks;
+        int to = (t + 1) * n / tasks;
+        futures.add(
+            executor.submit(
+                () -> {
+                  try (ObjectReader reader = ctx.getRepository().newObjectReader()) {
+                    return checkEntries(ctx, reader, rules, limits, results, reported, from, to);
+                  }
+                }));
+      }
+      // The receive thread validates the first range itself instead of idling.
+      result.append(
+          checkEntries(ctx, ctx.getObjectReader(), rules, limits, results, reported, 0, n / tasks));
+      for (Future<Range> future : futures) {
+        result.append(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CommitValidationException("interrupted while validating commit", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), RuleException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Runs the path and content checks of the rules on a range of the changed entries.
+   *
+   * @param reported number of messages each rule reported before the range was checked.
+   * @param from index of the first entry of the range.
+   * @param to index after the last entry of the range.
+   */
+  private static Range checkEntries(
+      CommitContext ctx,
+      ObjectReader reader,
+      List<ValidationRule> rules,
+      MessageLimits limits,
+      @Nullable ValidationResultCache.Results results,
+      int[] reported,
+      int from,
+      int to)
+      throws RuleException {
+    Range range = new Range(rules.size());
+    int total = Arrays.stream(reported).sum();
+    boolean inspectsContent = rules.stream().anyMatch(ValidationRule::inspectsContent);
+    long[] entryNanos = ctx.getEntryNanos();
+    for (int index = from; index < to; index++) {
+      if (limits.isTotalLimitReached(total) || ctx.getDeadline().isExceeded()) {
+        Arrays.fill(range.stopped, true);
+        break;
+      }
+      ChangedEntry entry = ctx.getEntries().get(index);
+      long entryStart = System.nanoTime();
+      try {
+        for (int i = 0; i < rules.size(); i++) {
+          List<CommitValidationMessage> messages = range.messages.get(i);
+          if (limits.isRuleLimitReached(reported[i] + messages.size())) {
+            range.stopped[i] = true;
+            continue;
+          }
+          int before = messages.size();
+          long start = System.nanoTime();
+          rules.get(i).checkPath(entry, messages);
+          range.nanos[i] += System.nanoTime() - start;
+          total += messages.size() - before;
+        }
+        if (!inspectsContent || !entry.isFile()) {
+          continue;
+        }
+        ObjectLoader ol = null;
+        for (int i = 0; i < rules.size(); i++) {
+          ValidationRule rule = rules.get(i);
+          List<CommitValidationMessage> messages = range.messages.get(i);
+          if (!rule.inspectsContent() || limits.isRuleLimitReached(reported[i] + messages.size())) {
+            continue;
+          }
+          int before = messages.size();
+          long start = System.nanoTime();
+          try {
+            HashCode key = results != null ? results.key(i, rule, ctx, entry) : null;
+            if (key != null && results.hasPassed(key)) {
+              continue;
+            }
+            if (ol == null) {
+              // Opening the file is not accounted to the rule which happens to need it first.
+              long open = System.nanoTime();
+              ol = ctx.open(reader, entry);
+              start += System.nanoTime() - open;
+            }
+            rule.checkContent(ctx, entry, ol, messages);
+            if (key != null && messages.size() == before) {
+              results.setPassed(key);
+            }
+          } catch (Deadline.ExceededException e) {
+            Arrays.fill(range.stopped, true);
+            return range;
+          } catch (IOException | ExecutionException | DiffNotAvailableException e) {
+            throw new RuleException(rule, e);
+          } finally {
+            range.nanos[i] += System.nanoTime() - start;
+          }
+          total += messages.size() - before;
+        }
+      } finally {
+        if (entryNanos != null) {
+          entryNanos[index] = System.nanoTime() - entryStart;
+        }
+      }
+    }
+    return range;
+  }
+
+  /** The messages reported by each of the rules for a range of the changed entries. */
+  private static class Range {
+    final List<List<CommitValidationMessage>> messages;
+    /** Whether a rule skipped entries of the range because of the limits. */
+    final boolean[] stopped;
+    /** The time in nanoseconds each rule spent on the range. */
+    final long[] nanos;
+
+    Range(int rules) {
+      messages = new ArrayList<>(rules);
+      for (int i = 0; i < rules; i++) {
+        messages.add(new ArrayList<>());
+      }
+      stopped = new boolean[rules];
+      nanos = new long[rules];
+    }
+
+    int[] sizes() {
+      return messages.stream().mapToInt(List::size).toArray();
+    }
+
+    void append(Range next) {
+      for (int i = 0; i < messages.size(); i++) {
+        messages.get(i).addAll(next.messages.get(i));
+        stopped[i] |= next.stopped[i];
+        nanos[i] += next.nanos[i];
+      }
+    }
+
+    /** Cuts the messages down to the limits and replaces the rest with a summary. */
+    ImmutableListMultimap<ValidationRule, CommitValidationMessage> build(
+        List<ValidationRule> rules, MessageLimits limits) {
+      ImmutableListMultimap.Builder<ValidationRule, CommitValidationMessage> result =
+          ImmutableListMultimap.builder();
+      int total = 0;
+      for (int i = 0; i < rules.size(); i++) {
+        List<CommitValidationMessage> m = messages.get(i);
+        int keep = m.size();
+        if (limits.getMaxMessagesPerRule() > 0) {
+          keep = Math.min(keep, limits.getMaxMessagesPerRule());
+        }
+        if (limits.getMaxMessages() > 0) {
+          keep = Math.min(keep, Math.max(1, limits.getMaxMessages() - total));
+        }
+        total += keep;
+        result.putAll(rules.get(i), m.subList(0, keep));
+        if (!m.isEmpty() && (keep < m.size() || stopped[i])) {
+          result.put(rules.get(i), MessageLimits.summary(m.size() - keep, stopped[i]));
+        }
+      }
+      return result.build();
+    }
+  }
+
+  /** Failure of a rule, carrying the rule whose error reason is reported. */
+  private static class RuleException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    final transient ValidationRule rule;
+
+    RuleException(ValidationRule rule, Throwable cause) {
+      super(cause);
+      this.rule = rule;
+    }
+  }
+
+  /** Runs the path checks of a single rule on the passed entries. */
+  static List<CommitValidationMessage> checkPaths(List<ChangedEntry> entries, ValidationRule rule) {
+    List<CommitValidationMessage> messages = new ArrayList<>();
+    for (ChangedEntry entry : entries) {
+      rule.checkPath(entry, messages);
+    }
+    return messages;
+  }
+
+  /** Runs a single rule on the commit, see {@link #validate(CommitContext, List)}. */
+  static List<CommitValidationMessage> validate(CommitContext ctx, ValidationRule rule)
+      throws CommitValidationException {
+    return validate(ctx, ImmutableList.of(rule)).get(rule);
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Plugin owned thread pool on which the {@link ValidationEngine} validates the changed files of
+ * large commits in parallel.
+ *
+ * <p>The pool is only created if {@code plugin.uploadvalidator.validationThreads} is set to more
+ * than one thread in the {@code gerrit.config}. Otherwise all files are validated on the receive
+ * thread.
+ */
+@Singleton
+public class ValidationExecutor implements LifecycleListener {
+  static final String KEY_VALIDATION_THREADS = "validationThreads";
+
+  public static LifecycleModule module() {
+    return new LifecycleModule() {
+      @Override
+      protected void configure() {
+        listener().to(ValidationExecutor.class);
+      }
+    };
+  }
+
+  private final WorkQueue workQueue;
+  private final int threads;
+  private volatile ExecutorService executor;
+
+  @Inject
+  ValidationExecutor(
+      WorkQueue workQueue, PluginConfigFactory cfgFactory, @PluginName String pluginName) {
+    this.workQueue = workQueue;
+    this.threads = cfgFactory.getFromGerritConfig(pluginName).getInt(KEY_VALIDATION_THREADS, 1);
+  }
+
+  @Override
+  public void start() {
+    if (threads > 1) {
+      executor = workQueue.createQueue(threads, "UploadValidator");
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /** @return the number of threads of the thread pool. */
+  public int getThreads() {
+    return threads;
+  }
+
+  /** @return the thread pool, or {@code null} if files are validated on the receive thread. */
+  @Nullable
+  public ExecutorService get() {
+    return executor;
+  }
+}
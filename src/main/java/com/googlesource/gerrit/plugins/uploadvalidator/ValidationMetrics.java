@@ -0,0 +1,121 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.metrics.Timer1;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the {@link ValidationEngine}, which tell how long the validation of a commit takes and
+ * which of the validators and phases it is spent in.
+ */
+@Singleton
+public class ValidationMetrics {
+  /** The phases of the validation of a commit. */
+  public enum Phase {
+    /** Loading the validation plan of the project. */
+    CONFIG_LOAD,
+    /** Walking the trees of the commit and its parents for the changed entries. */
+    TREE_WALK,
+    /** Opening the content of the changed files. */
+    BLOB_READ,
+    /** Computing the edits of the modified files. */
+    DIFF_FETCH,
+    /** Running the checks of the rules, including the reads of large files but not the diffs. */
+    MATCH
+  }
+
+  private final Timer0 commitLatency;
+  private final Timer1<Phase> phaseLatency;
+  private final Timer1<String> validatorLatency;
+  private final Counter0 filesExamined;
+  private final Counter0 bytesInflated;
+  private final Counter1<String> messages;
+
+  @Inject
+  ValidationMetrics(MetricMaker metricMaker) {
+    Field<String> validatorField =
+        Field.ofString("validator", Metadata.Builder::operationName)
+            .description("The validator op, e.g. blockedKeyword.")
+            .build();
+    commitLatency =
+        metricMaker.newTimer(
+            "validation/commit_latency",
+            new Description("Time spent validating a commit.")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    phaseLatency =
+        metricMaker.newTimer(
+            "validation/phase_latency",
+            new Description("Time spent in a phase of the validation of a commit.")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            Field.ofEnum(Phase.class, "phase", Metadata.Builder::operationName)
+                .description("The phase of the validation.")
+                .build());
+    validatorLatency =
+        metricMaker.newTimer(
+            "validation/validator_latency",
+            new Description("Time spent in the checks of a validator on a commit.")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            validatorField);
+    filesExamined =
+        metricMaker.newCounter(
+            "validation/files_examined",
+            new Description("Changed files whose content was checked.").setRate());
+    bytesInflated =
+        metricMaker.newCounter(
+            "validation/bytes_inflated",
+            new Description("Size of the changed files whose content was checked.")
+                .setRate()
+                .setUnit(Units.BYTES));
+    messages =
+        metricMaker.newCounter(
+            "validation/messages",
+            new Description("Validation messages reported by a validator.").setRate(),
+            validatorField);
+  }
+
+  Timer0.Context startCommit() {
+    return commitLatency.start();
+  }
+
+  void recordPhase(Phase phase, long nanos) {
+    phaseLatency.record(phase, nanos, TimeUnit.NANOSECONDS);
+  }
+
+  void recordValidator(String validatorOp, long nanos, int messageCount) {
+    validatorLatency.record(validatorOp, nanos, TimeUnit.NANOSECONDS);
+    if (messageCount > 0) {
+      messages.incrementBy(validatorOp, messageCount);
+    }
+  }
+
+  void recordFile(long size) {
+    filesExamined.increment();
+    bytesInflated.incrementBy(size);
+  }
+}
@@ -0,0 +1,146 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.config.PluginConfig;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The validation rules configured for a project and the settings which decide whether they are
+ * enabled for a push, compiled once from the plugin config of the project.
+ *
+ * <p>The plan is immutable and is shared by all pushes to the project until its config changes, see
+ * {@link ValidationPlanCache}.
+ */
+public class ValidationPlan {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  static final ValidationPlan EMPTY =
+      new ValidationPlan(null, MessageLimits.NONE, TimeBudget.NONE, "", ImmutableMap.of());
+
+  /**
+   * Creates the rules of all validations which are configured in the passed config. A validation
+   * with an invalid setting, e.g. a malformed pattern, is reported and left out of the plan, the
+   * other validations are still run.
+   */
+  static ValidationPlan compile(
+      Project.NameKey project,
+      PluginConfig cfg,
+      @Nullable ValidatorConfig.Filter filter,
+      Iterable<ValidationRule.Factory> factories)
+      throws ExecutionException {
+    ImmutableMap.Builder<String, ValidationRule> rules = ImmutableMap.builder();
+    for (ValidationRule.Factory factory : factories) {
+      ValidationRule rule;
+      try {
+        rule = factory.create(cfg);
+      } catch (ExecutionException e) {
+        throw new ExecutionException("cannot load " + factory.getValidatorOp() + " config", e);
+      } catch (UncheckedExecutionException | IllegalArgumentException e) {
+        Throwable cause = e instanceof UncheckedExecutionException ? e.getCause() : e;
+        logger.atSevere().log(
+            "Invalid %s config in %s project's plugin config, the validation is skipped: %s",
+            factory.getValidatorOp(), project.get(), cause.getMessage());
+        continue;
+      }
+      if (rule != null) {
+        rules.put(factory.getValidatorOp(), rule);
+      }
+    }
+    return new ValidationPlan(
+        filter,
+        MessageLimits.fromConfig(cfg),
+        TimeBudget.fromConfig(cfg),
+        fingerprint(cfg),
+        rules.build());
+  }
+
+  /** @return a hash of all settings of the passed config, which the rules are created from. */
+  static String fingerprint(PluginConfig cfg) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String name : new TreeSet<>(cfg.getNames())) {
+      hasher.putString(name, UTF_8).putByte((byte) 0);
+      for (String value : cfg.getStringList(name)) {
+        hasher.putString(value, UTF_8).putByte((byte) 0);
+      }
+      hasher.putByte((byte) 1);
+    }
+    return hasher.hash().toString();
+  }
+
+  @Nullable private final ValidatorConfig.Filter filter;
+  private final MessageLimits limits;
+  private final TimeBudget timeBudget;
+  private final String fingerprint;
+  private final ImmutableMap<String, ValidationRule> rules;
+
+  private ValidationPlan(
+      @Nullable ValidatorConfig.Filter filter,
+      MessageLimits limits,
+      TimeBudget timeBudget,
+      String fingerprint,
+      ImmutableMap<String, ValidationRule> rules) {
+    this.filter = filter;
+    this.limits = limits;
+    this.timeBudget = timeBudget;
+    this.fingerprint = fingerprint;
+    this.rules = rules;
+  }
+
+  /** @return the configured rules, keyed by their validator op. */
+  public ImmutableMap<String, ValidationRule> getRules() {
+    return rules;
+  }
+
+  /** @return the limits of the number of validation messages of a commit. */
+  public MessageLimits getLimits() {
+    return limits;
+  }
+
+  /** @return the limits of the time the validation of a commit and a push may take. */
+  public TimeBudget getTimeBudget() {
+    return timeBudget;
+  }
+
+  /** @return the fingerprint of the config the rules were created from. */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  public boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /** Checks whether a validation is enabled for a push, see {@link ValidatorConfig#isEnabled}. */
+  public boolean isEnabled(
+      @Nullable IdentifiedUser user,
+      String refName,
+      String validatorOp,
+      ImmutableListMultimap<String, String> pushOptions) {
+    return filter != null && filter.isEnabled(user, refName, validatorOp, pushOptions);
+  }
+}
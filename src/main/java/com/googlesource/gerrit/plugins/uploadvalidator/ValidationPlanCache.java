@@ -0,0 +1,115 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Holds the compiled {@link ValidationPlan} of recently pushed projects, so that the plugin config
+ * is parsed and its patterns are compiled once per config change instead of once per commit.
+ *
+ * <p>As the plugin config is inherited, the plan is keyed by the {@code refs/meta/config} revisions
+ * of the project and of all its parents. Changing the config of any of them results in a new key,
+ * and the stale plan is evicted once the cache is full.
+ */
+@Singleton
+public class ValidationPlanCache {
+  static final String CACHE_NAME = "validationPlan";
+
+  public static CacheModule module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, String.class, ValidationPlan.class).maximumWeight(1024);
+        bind(ValidationPlanCache.class);
+      }
+    };
+  }
+
+  private final Cache<String, ValidationPlan> cache;
+  private final ProjectCache projectCache;
+  private final ConfigFactory configFactory;
+  private final ValidatorConfig validatorConfig;
+  private final DynamicSet<ValidationRule.Factory> ruleFactories;
+
+  @Inject
+  ValidationPlanCache(
+      @Named(CACHE_NAME) Cache<String, ValidationPlan> cache,
+      ProjectCache projectCache,
+      ConfigFactory configFactory,
+      ValidatorConfig validatorConfig,
+      DynamicSet<ValidationRule.Factory> ruleFactories) {
+    this.cache = cache;
+    this.projectCache = projectCache;
+    this.configFactory = configFactory;
+    this.validatorConfig = validatorConfig;
+    this.ruleFactories = ruleFactories;
+  }
+
+  /**
+   * Returns the validation plan of the passed project, compiling it from the plugin config of the
+   * project if its current config revision is not cached yet.
+   *
+   * @throws ExecutionException if the config of a validation could not be loaded.
+   */
+  public ValidationPlan get(Project.NameKey project) throws ExecutionException {
+    Optional<ProjectState> state = projectCache.get(project);
+    if (!state.isPresent()) {
+      return compile(project);
+    }
+    try {
+      return cache.get(key(project, state.get()), () -> compile(project));
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), ExecutionException.class);
+      throw e;
+    } catch (UncheckedExecutionException e) {
+      throw new ExecutionException(e.getCause());
+    }
+  }
+
+  private ValidationPlan compile(Project.NameKey project) throws ExecutionException {
+    PluginConfig cfg = configFactory.get(project);
+    if (cfg == null) {
+      return ValidationPlan.EMPTY;
+    }
+    return ValidationPlan.compile(
+        project, cfg, validatorConfig.compile(project, cfg), ruleFactories);
+  }
+
+  @VisibleForTesting
+  static String key(Project.NameKey project, ProjectState state) {
+    StringBuilder key = new StringBuilder(project.get());
+    for (ProjectState p : state.treeInOrder()) {
+      key.append(':')
+          .append(p.getConfig().getRevision().map(ObjectId::name).orElse(ObjectId.zeroId().name()));
+    }
+    return key.toString();
+  }
+}
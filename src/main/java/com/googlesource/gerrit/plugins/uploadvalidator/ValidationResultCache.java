@@ -0,0 +1,126 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.cache.Cache;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.patch.DiffNotAvailableException;
+import com.google.gerrit.server.patch.filediff.FileDiffOutput;
+import com.google.gerrit.server.patch.filediff.TaggedEdit;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.eclipse.jgit.diff.Edit;
+
+/**
+ * Remembers which files passed the content checks of a rule, so that files which did not change
+ * since a previous push, e.g. in a new patch set or after a rebase, are not checked again.
+ *
+ * <p>A passed check is keyed by the fingerprint of the plugin config the rule was created from, the
+ * validator op, the path and blob of the file and the {@link ValidationRule#getContentCheckKey} of
+ * the rule. Failed checks are not remembered, they are repeated to report their messages.
+ */
+@Singleton
+public class ValidationResultCache {
+  static final String CACHE_NAME = "validationResult";
+
+  public static CacheModule module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, HashCode.class, Boolean.class).maximumWeight(500_000);
+        bind(ValidationResultCache.class);
+      }
+    };
+  }
+
+  /** @return a content check key made of the lines of the new file which are covered by edits. */
+  static String editedLines(FileDiffOutput fileDiff) {
+    StringBuilder key = new StringBuilder();
+    for (TaggedEdit e : fileDiff.edits()) {
+      Edit edit = e.jgitEdit();
+      key.append(edit.getBeginB()).append('-').append(edit.getEndB()).append(',');
+    }
+    return key.toString();
+  }
+
+  private final Cache<HashCode, Boolean> cache;
+
+  @Inject
+  ValidationResultCache(@Named(CACHE_NAME) Cache<HashCode, Boolean> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Returns the results of the passed rules of a plan.
+   *
+   * @param validatorOps the validator ops of the rules, in the order in which they are validated.
+   */
+  Results forRules(ValidationPlan plan, List<String> validatorOps) {
+    String[] ruleKeys = new String[validatorOps.size()];
+    for (int i = 0; i < ruleKeys.length; i++) {
+      ruleKeys[i] = plan.getFingerprint() + ':' + validatorOps.get(i);
+    }
+    return new Results(ruleKeys);
+  }
+
+  /** The passed content checks of the rules of a validation. */
+  class Results {
+    private final String[] ruleKeys;
+
+    private Results(String[] ruleKeys) {
+      this.ruleKeys = ruleKeys;
+    }
+
+    /**
+     * @return the key of the content check of the rule with the passed index on a file, or {@code
+     *     null} if its result cannot be reused.
+     */
+    @Nullable
+    HashCode key(int index, ValidationRule rule, CommitContext ctx, ChangedEntry entry)
+        throws IOException, ExecutionException, DiffNotAvailableException {
+      String checkKey = rule.getContentCheckKey(ctx, entry);
+      if (checkKey == null) {
+        return null;
+      }
+      return Hashing.sha256()
+          .newHasher()
+          .putString(ruleKeys[index], UTF_8)
+          .putByte((byte) 0)
+          .putString(entry.getPath(), UTF_8)
+          .putByte((byte) 0)
+          .putString(entry.getObjectId().name(), UTF_8)
+          .putByte((byte) 0)
+          .putString(checkKey, UTF_8)
+          .hash();
+    }
+
+    boolean hasPassed(HashCode key) {
+      return cache.getIfPresent(key) != null;
+    }
+
+    void setPassed(HashCode key) {
+      cache.put(key, Boolean.TRUE);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.git.validators.CommitValidationMessage;
+import com.google.gerrit.server.patch.DiffNotAvailableException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.eclipse.jgit.lib.ObjectLoader;
+
+/**
+ * A single validation which is run by the {@link ValidationEngine}.
+ *
+ * <p>The engine first calls {@link #checkCommit} once per commit. It then walks the changed entries
+ * of the commit once and calls {@link #checkPath} for every entry. For every changed file the blob
+ * is opened once and handed to {@link #checkContent} of all rules which {@link #inspectsContent()}.
+ *
+ * <p>Rules are created from the plugin config of a project and must not keep any state of the
+ * commit they validate; per-commit state belongs into the {@link CommitContext}. The path and
+ * content checks of a rule may be called concurrently for different entries of the same commit.
+ */
+public interface ValidationRule {
+
+  /** Creates the rule of a validator from the plugin config of a project. */
+  interface Factory {
+    /**
+     * @return the name of the validation, as used by the {@code skipValidation} and {@code
+     *     disabledValidation} settings.
+     */
+    String getValidatorOp();
+
+    /**
+     * @return the rule for the passed config, or {@code null} if the validation is not configured.
+     */
+    @Nullable
+    ValidationRule create(PluginConfig cfg) throws ExecutionException;
+  }
+
+  /** @return message of the rejection if the rule reported any validation messages. */
+  String getRejectReason();
+
+  /** @return message of the rejection if the rule could not be evaluated. */
+  String getErrorReason();
+
+  /** @return whether {@link #checkContent} needs to be called for the changed files. */
+  default boolean inspectsContent() {
+    return false;
+  }
+
+  default void checkPath(ChangedEntry entry, List<CommitValidationMessage> messages) {}
+
+  default void checkContent(
+      CommitContext ctx,
+      ChangedEntry entry,
+      ObjectLoader ol,
+      List<CommitValidationMessage> messages)
+      throws IOException, ExecutionException, DiffNotAvailableException {}
+
+  /**
+   * Returns what decides the outcome of {@link #checkContent} for a file besides the path and the
+   * content of the file, e.g. the lines which are checked. If a file passed the check, it is not
+   * checked again in other commits with the same path, content and key, see {@link
+   * ValidationResultCache}.
+   *
+   * @return the key, or {@code null} if the outcome also depends on the commit, e.g. on its
+   *     parents.
+   */
+  @Nullable
+  default String getContentCheckKey(CommitContext ctx, ChangedEntry entry)
+      throws IOException, ExecutionException, DiffNotAvailableException {
+    return null;
+  }
+
+  default void checkCommit(CommitContext ctx, List<CommitValidationMessage> messages)
+      throws IOException, ExecutionException, DiffNotAvailableException {}
+}
@@ -0,0 +1,111 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.server.git.validators.CommitValidationMessage;
+import com.google.gerrit.server.logging.TraceContext;
+import com.googlesource.gerrit.plugins.uploadvalidator.ValidationMetrics.Phase;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Breakdown of the time spent validating a commit, per phase, per validator and for the slowest
+ * files. It is reported to the user as informational messages and written to the trace log if the
+ * {@link TracePushOption} is set on a push.
+ */
+class ValidationTrace {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Maximum number of files whose time is reported, the slowest first. */
+  static final int MAX_FILES = 20;
+
+  private final String pluginName;
+  private final List<String> lines = new ArrayList<>();
+
+  ValidationTrace(String pluginName) {
+    this.pluginName = pluginName;
+  }
+
+  void addPhase(Phase phase, long nanos) {
+    lines.add(String.format("phase %s: %s", phase.name().toLowerCase(Locale.ROOT), format(nanos)));
+  }
+
+  /** Adds the phases after the config load and the times of the rules and files of the commit. */
+  void addCommit(
+      CommitContext ctx,
+      List<String> ops,
+      List<ValidationRule> rules,
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> messages) {
+    for (Phase phase : Phase.values()) {
+      if (phase != Phase.CONFIG_LOAD) {
+        addPhase(phase, ctx.getPhaseNanos(phase));
+      }
+    }
+    long[] ruleNanos = ctx.getRuleNanos();
+    for (int i = 0; i < rules.size(); i++) {
+      lines.add(
+          String.format(
+              "validator %s: %s, %d messages",
+              ops.get(i), format(ruleNanos[i]), messages.get(rules.get(i)).size()));
+    }
+    long[] entryNanos = ctx.getEntryNanos();
+    ImmutableList<ChangedEntry> entries = ctx.getEntries();
+    IntStream.range(0, entries.size())
+        .boxed()
+        .sorted(Comparator.comparingLong((Integer i) -> entryNanos[i]).reversed())
+        .limit(MAX_FILES)
+        .forEach(
+            i ->
+                lines.add(
+                    String.format("file %s: %s", entries.get(i).getPath(), format(entryNanos[i]))));
+    if (entries.size() > MAX_FILES) {
+      lines.add(String.format("%d faster files not listed", entries.size() - MAX_FILES));
+    }
+  }
+
+  /**
+   * Writes the breakdown to the trace log.
+   *
+   * @return the breakdown as informational messages for the user.
+   */
+  List<CommitValidationMessage> report(String commitName) {
+    List<CommitValidationMessage> messages = new ArrayList<>(lines.size() + 1);
+    String header = String.format("%s trace of %s:", pluginName, commitName);
+    // The context only makes the fine log statements below be logged, it is not used otherwise.
+    TraceContext traceContext = TraceContext.open().forceLogging().addPluginTag(pluginName);
+    try {
+      logger.atFine().log("%s", header);
+      messages.add(new CommitValidationMessage(header, false));
+      for (String line : lines) {
+        logger.atFine().log("%s: %s", commitName, line);
+        messages.add(new CommitValidationMessage("  " + line, false));
+      }
+    } finally {
+      traceContext.close();
+    }
+    return messages;
+  }
+
+  private static String format(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+  }
+}
@@ -16,20 +16,28 @@ package com.googlesource.gerrit.plugins.uploadvalidator;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.AccessSection;
 import com.google.gerrit.entities.AccountGroup;
 import com.google.gerrit.entities.AccountGroup.UUID;
 import com.google.gerrit.entities.InternalGroup;
 import com.google.gerrit.entities.Project;
-import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.extensions.annotations.Exports;
 import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.api.projects.ProjectConfigEntryType;
+import com.google.gerrit.extensions.events.GroupIndexedListener;
+import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.cache.CacheModule;
 import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.config.ProjectConfigEntry;
 import com.google.gerrit.server.project.RefPatternMatcher;
@@ -37,9 +45,19 @@ import com.google.gerrit.server.query.group.InternalGroupQuery;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiPredicate;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class ValidatorConfig {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
@@ -73,7 +91,9 @@ public class ValidatorConfig {
                     null,
                     false,
                     "Only refs that match this regex will be validated."));
+        install(GroupByNameFromIndexFinder.module());
         bind(GroupByNameFinder.class).to(GroupByNameFromIndexFinder.class);
+        DynamicSet.bind(binder(), GroupIndexedListener.class).to(GroupByNameFromIndexFinder.class);
       }
     };
   }
@@ -106,129 +126,194 @@ public class ValidatorConfig {
       ImmutableListMultimap<String, String> pushOptions) {
     PluginConfig conf = configFactory.get(projectName);
 
+    // Only the criteria which are needed for this single decision are evaluated. Callers which
+    // decide repeatedly should use the filter of the ValidationPlan of the project instead.
     return conf != null
-        && isValidConfig(conf, projectName)
-        && !isDisabledByPushOption(conf, pushOptions)
-        && activeForRef(conf, refName)
-        && (user == null || activeForEmail(conf, user.getAccount().preferredEmail()))
-        && activeForGroup(conf, user)
-        && activeForProject(conf, projectName.get())
-        && !isDisabledValidatorOp(conf, validatorOp)
-        && (!hasCriteria(conf, "skipGroup")
-            || !canSkipValidation(conf, validatorOp)
-            || !canSkipRef(conf, refName)
-            || !canSkipGroup(conf, user));
+        && new Filter(projectName, conf, false).isEnabled(user, refName, validatorOp, pushOptions);
   }
 
-  private boolean isValidConfig(PluginConfig config, Project.NameKey projectName) {
-    return hasValidConfigRef(config, "ref", projectName)
-        && hasValidConfigRef(config, "skipRef", projectName);
+  /**
+   * Compiles the settings of the passed plugin config which decide whether a validation is enabled.
+   * The returned filter is meant to be kept for as long as the config does not change.
+   */
+  public Filter compile(Project.NameKey projectName, PluginConfig conf) {
+    return new Filter(projectName, conf, true);
   }
 
-  private boolean hasValidConfigRef(
-      PluginConfig config, String refKey, Project.NameKey projectName) {
-    boolean valid = true;
-    for (String refPattern : config.getStringList(refKey)) {
-      if (!AccessSection.isValidRefSectionName(refPattern)) {
-        logger.atSevere().log(
-            "Invalid %s name/pattern/regex '%s' in %s project's plugin config",
-            refKey, refPattern, projectName.get());
-        valid = false;
+  /**
+   * The compiled form of the settings which decide whether a validation is enabled, see {@link
+   * ValidatorConfig#isEnabled}.
+   *
+   * <p>The ref, project and email patterns are compiled once, when they are first needed. Decisions
+   * of a compiled filter which depend on the pushing user are memoized per user instance, i.e. for
+   * the duration of a push, so that the group lookups are not repeated for every commit of the
+   * push.
+   */
+  public class Filter {
+    private final boolean valid;
+    private final Supplier<Boolean> activeForProject;
+    private final boolean skipViaPushOption;
+    private final Supplier<ImmutableList<RefPatternMatcher>> refs;
+    private final Supplier<ImmutableList<Pattern>> emails;
+    private final ImmutableList<String> groups;
+    private final ImmutableSet<String> disabledValidations;
+    private final ImmutableSet<String> skipValidations;
+    private final Supplier<ImmutableList<RefPatternMatcher>> skipRefs;
+    private final ImmutableList<String> skipGroups;
+    @Nullable private final Cache<IdentifiedUser, Map<String, Boolean>> decisions;
+
+    private Filter(Project.NameKey projectName, PluginConfig config, boolean memoize) {
+      valid = isValidConfig(config, projectName);
+      activeForProject =
+          Suppliers.memoize(
+              () ->
+                  matchCriteria(
+                      patterns(config, "project"),
+                      projectName.get(),
+                      (p, v) -> p.matcher(v).matches()));
+      skipViaPushOption = config.getBoolean("skipViaPushOption", false);
+      refs = Suppliers.memoize(() -> refMatchers(config, "ref"));
+      emails = Suppliers.memoize(() -> patterns(config, "email"));
+      groups = ImmutableList.copyOf(config.getStringList("group"));
+      disabledValidations = ImmutableSet.copyOf(config.getStringList("disabledValidation"));
+      skipValidations = ImmutableSet.copyOf(config.getStringList("skipValidation"));
+      skipRefs = Suppliers.memoize(() -> refMatchers(config, "skipRef"));
+      skipGroups = ImmutableList.copyOf(config.getStringList("skipGroup"));
+      decisions = memoize ? CacheBuilder.newBuilder().weakKeys().build() : null;
+    }
+
+    /** See {@link ValidatorConfig#isEnabled}, for the project this filter was compiled for. */
+    public boolean isEnabled(
+        @Nullable IdentifiedUser user,
+        String refName,
+        String validatorOp,
+        ImmutableListMultimap<String, String> pushOptions) {
+      if (!valid || isDisabledByPushOption(pushOptions) || !activeForProject.get()) {
+        return false;
+      }
+      if (user == null || decisions == null) {
+        return decide(user, refName, validatorOp);
       }
+      Map<String, Boolean> memo;
+      try {
+        memo = decisions.get(user, ConcurrentHashMap::new);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e);
+      }
+      return memo.computeIfAbsent(
+          refName + '\0' + validatorOp, k -> decide(user, refName, validatorOp));
     }
-    return valid;
-  }
 
-  private boolean hasCriteria(PluginConfig config, String criteria) {
-    return config.getStringList(criteria).length > 0;
-  }
+    private boolean decide(@Nullable IdentifiedUser user, String refName, String validatorOp) {
+      return activeForRef(refName)
+          && (user == null || activeForEmail(user.getAccount().preferredEmail()))
+          && activeForGroup(user)
+          && !disabledValidations.contains(validatorOp)
+          && (skipGroups.isEmpty()
+              || !canSkipValidation(validatorOp)
+              || !canSkipRef(refName)
+              || !canSkipGroup(user));
+    }
 
-  private boolean isDisabledValidatorOp(PluginConfig config, String validatorOp) {
-    String[] c = config.getStringList("disabledValidation");
-    return Arrays.asList(c).contains(validatorOp);
-  }
+    private boolean isDisabledByPushOption(ImmutableListMultimap<String, String> pushOptions) {
+      String qualifiedName = pluginName + "~" + SkipValidationPushOption.NAME;
+      if (!skipViaPushOption) {
+        return false;
+      }
+      return pushOptions.containsKey(qualifiedName);
+    }
 
-  private boolean isDisabledByPushOption(
-      PluginConfig config, ImmutableListMultimap<String, String> pushOptions) {
-    String qualifiedName = pluginName + "~" + SkipValidationPushOption.NAME;
-    if (!config.getBoolean("skipViaPushOption", false)) {
-      return false;
+    private boolean activeForRef(String ref) {
+      return matchCriteria(refs.get(), ref, (m, v) -> m.match(v, null));
     }
-    return pushOptions.containsKey(qualifiedName);
-  }
 
-  private boolean activeForProject(PluginConfig config, String project) {
-    return matchCriteria(config, "project", project, true, false);
-  }
+    private boolean activeForEmail(@Nullable String email) {
+      return matchCriteria(emails.get(), email, (p, v) -> p.matcher(v).matches());
+    }
+
+    private boolean activeForGroup(@Nullable IdentifiedUser user) {
+      if (user == null || groups.isEmpty()) {
+        return true;
+      }
+      return user.getEffectiveGroups().containsAnyOf(groupUUIDs(groups));
+    }
+
+    private boolean canSkipValidation(String validatorOp) {
+      return skipValidations.isEmpty() || skipValidations.contains(validatorOp);
+    }
+
+    private boolean canSkipRef(String ref) {
+      return matchCriteria(skipRefs.get(), ref, (m, v) -> m.match(v, null));
+    }
 
-  private boolean activeForRef(PluginConfig config, String ref) {
-    return matchCriteria(config, "ref", ref, true, true);
+    private boolean canSkipGroup(@Nullable IdentifiedUser user) {
+      if (user == null) {
+        return false;
+      }
+      return user.getEffectiveGroups().containsAnyOf(groupUUIDs(skipGroups));
+    }
   }
 
-  private boolean activeForEmail(PluginConfig config, @Nullable String email) {
-    return matchCriteria(config, "email", email, true, false);
+  private boolean isValidConfig(PluginConfig config, Project.NameKey projectName) {
+    return hasValidConfigRef(config, "ref", projectName)
+        && hasValidConfigRef(config, "skipRef", projectName)
+        && hasValidPatterns(config, "project", projectName)
+        && hasValidPatterns(config, "email", projectName);
   }
 
-  private boolean activeForGroup(PluginConfig config, @Nullable IdentifiedUser user) {
-    if (user == null) {
-      return true;
+  private boolean hasValidPatterns(PluginConfig config, String key, Project.NameKey projectName) {
+    boolean valid = true;
+    for (String regex : config.getStringList(key)) {
+      try {
+        Pattern.compile(regex);
+      } catch (PatternSyntaxException e) {
+        logger.atSevere().log(
+            "Invalid %s regex '%s' in %s project's plugin config", key, regex, projectName.get());
+        valid = false;
+      }
     }
+    return valid;
+  }
 
-    ImmutableList<UUID> groups =
-        Arrays.stream(config.getStringList("group"))
-            .map(this::groupUUID)
-            .collect(toImmutableList());
-    if (groups.isEmpty()) {
-      return true;
+  private boolean hasValidConfigRef(
+      PluginConfig config, String refKey, Project.NameKey projectName) {
+    boolean valid = true;
+    for (String refPattern : config.getStringList(refKey)) {
+      if (!AccessSection.isValidRefSectionName(refPattern)) {
+        logger.atSevere().log(
+            "Invalid %s name/pattern/regex '%s' in %s project's plugin config",
+            refKey, refPattern, projectName.get());
+        valid = false;
+      }
     }
-
-    return user.getEffectiveGroups().containsAnyOf(groups);
+    return valid;
   }
 
-  private boolean canSkipValidation(PluginConfig config, String validatorOp) {
-    return matchCriteria(config, "skipValidation", validatorOp, false, false);
+  private static ImmutableList<RefPatternMatcher> refMatchers(PluginConfig config, String key) {
+    return Arrays.stream(config.getStringList(key))
+        .map(RefPatternMatcher::getMatcher)
+        .collect(toImmutableList());
   }
 
-  private boolean canSkipRef(PluginConfig config, String ref) {
-    return matchCriteria(config, "skipRef", ref, true, true);
+  private static ImmutableList<Pattern> patterns(PluginConfig config, String key) {
+    return Arrays.stream(config.getStringList(key))
+        .map(Pattern::compile)
+        .collect(toImmutableList());
   }
 
-  private boolean matchCriteria(
-      PluginConfig config,
-      String criteria,
-      @Nullable String value,
-      boolean allowRegex,
-      boolean refMatcher) {
-    String[] c = config.getStringList(criteria);
-    if (c.length == 0) {
+  private static <T> boolean matchCriteria(
+      List<T> matchers, @Nullable String value, BiPredicate<T, String> match) {
+    if (matchers.isEmpty()) {
       return true;
     }
     if (value == null) {
       return false;
     }
-    if (allowRegex) {
-      return Arrays.stream(c).anyMatch(s -> match(value, s, refMatcher));
-    }
-    return Arrays.asList(c).contains(value);
+    return matchers.stream().anyMatch(m -> match.test(m, value));
   }
 
-  private static boolean match(String value, String pattern, boolean refMatcher) {
-    if (refMatcher) {
-      return RefPatternMatcher.getMatcher(pattern).match(value, null);
-    }
-    return Pattern.matches(pattern, value);
-  }
-
-  private boolean canSkipGroup(PluginConfig conf, @Nullable IdentifiedUser user) {
-    if (user == null) {
-      return false;
-    }
-
-    ImmutableList<UUID> skipGroups =
-        Arrays.stream(conf.getStringList("skipGroup"))
-            .map(this::groupUUID)
-            .collect(toImmutableList());
-    return user.getEffectiveGroups().containsAnyOf(skipGroups);
+  private ImmutableList<UUID> groupUUIDs(List<String> groupNamesOrUUIDs) {
+    return groupNamesOrUUIDs.stream().map(this::groupUUID).collect(toImmutableList());
   }
 
   private AccountGroup.UUID groupUUID(String groupNameOrUUID) {
@@ -240,23 +325,57 @@ public class ValidatorConfig {
     Optional<InternalGroup> get(AccountGroup.NameKey groupName);
   }
 
-  static class GroupByNameFromIndexFinder implements GroupByNameFinder {
+  /**
+   * Looks up groups by name in the group index. The result of the lookup is cached, so that the
+   * configured groups are not queried from the index on every push.
+   *
+   * <p>Cached lookups expire after {@code cache."uploadvalidator.groupByName".maxAge}. When a group
+   * is reindexed, e.g. because it was created or renamed, the lookups which resolved to the group
+   * and all lookups which did not find a group are evicted.
+   */
+  @Singleton
+  static class GroupByNameFromIndexFinder implements GroupByNameFinder, GroupIndexedListener {
+    static final String CACHE_NAME = "groupByName";
+
+    static CacheModule module() {
+      return new CacheModule() {
+        @Override
+        protected void configure() {
+          cache(CACHE_NAME, String.class, new TypeLiteral<Optional<InternalGroup>>() {})
+              .maximumWeight(1024)
+              .expireAfterWrite(Duration.ofMinutes(10));
+        }
+      };
+    }
 
     private final Provider<InternalGroupQuery> groupQueryProvider;
+    private final Cache<String, Optional<InternalGroup>> cache;
 
     @Inject
-    GroupByNameFromIndexFinder(Provider<InternalGroupQuery> groupQueryProvider) {
+    GroupByNameFromIndexFinder(
+        Provider<InternalGroupQuery> groupQueryProvider,
+        @Named(CACHE_NAME) Cache<String, Optional<InternalGroup>> cache) {
       this.groupQueryProvider = groupQueryProvider;
+      this.cache = cache;
     }
 
     @Override
     public Optional<InternalGroup> get(AccountGroup.NameKey groupName) {
       try {
-        return groupQueryProvider.get().byName(groupName);
-      } catch (StorageException e) {
-        logger.atWarning().withCause(e).log("Cannot lookup group %s by name", groupName.get());
+        return cache.get(groupName.get(), () -> groupQueryProvider.get().byName(groupName));
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        logger.atWarning().withCause(e.getCause()).log(
+            "Cannot lookup group %s by name", groupName.get());
       }
       return Optional.empty();
     }
+
+    @Override
+    public void onGroupIndexed(String uuid) {
+      cache
+          .asMap()
+          .values()
+          .removeIf(group -> !group.isPresent() || group.get().getGroupUUID().get().equals(uuid));
+    }
   }
 }
@@ -0,0 +1,64 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.nio.charset.StandardCharsets;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlobContentCacheTest extends ValidatorTestCase {
+  private Cache<ObjectId, byte[]> cache;
+  private BlobContentCache blobContentCache;
+  private TestRepository<Repository> testRepo;
+
+  @Before
+  public void setUp() throws Exception {
+    cache = CacheBuilder.newBuilder().build();
+    blobContentCache = new BlobContentCache(cache);
+    testRepo = new TestRepository<>(repo);
+  }
+
+  @Test
+  public void smallBlobIsCached() throws Exception {
+    byte[] content = "foo\nbar\n".getBytes(StandardCharsets.UTF_8);
+    ObjectId blob = testRepo.blob(content);
+    try (ObjectReader reader = repo.newObjectReader()) {
+      ObjectLoader ol = blobContentCache.open(reader, blob);
+      assertThat(ol.getCachedBytes()).isEqualTo(content);
+      assertThat(cache.getIfPresent(blob)).isEqualTo(content);
+      assertThat(blobContentCache.open(reader, blob).getCachedBytes())
+          .isSameInstanceAs(ol.getCachedBytes());
+    }
+  }
+
+  @Test
+  public void largeBlobIsStreamed() throws Exception {
+    ObjectId blob = testRepo.blob(new byte[BlobContentCache.MAX_CACHED_BLOB_SIZE + 1]);
+    try (ObjectReader reader = repo.newObjectReader()) {
+      ObjectLoader ol = blobContentCache.open(reader, blob);
+      assertThat(ol.getSize()).isEqualTo(BlobContentCache.MAX_CACHED_BLOB_SIZE + 1);
+      assertThat(cache.getIfPresent(blob)).isNull();
+    }
+  }
+}
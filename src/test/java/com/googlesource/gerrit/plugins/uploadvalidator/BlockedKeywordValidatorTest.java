@@ -104,15 +104,16 @@ public class BlockedKeywordValidatorTest extends ValidatorTestCase {
       BlockedKeywordValidator validator =
           new BlockedKeywordValidator(
               null,
-              new ContentTypeUtil(PATTERN_CACHE),
+              TestUtils.createContentTypeUtil(),
               PATTERN_CACHE,
               null,
-              null,
               diffOperationsMock,
               null);
       List<CommitValidationMessage> m =
           validator.performValidation(
-              Project.nameKey("project"), repo, c, rw, getPatterns().values(), EMPTY_PLUGIN_CONFIG);
+              TestUtils.createCommitContext(repo, rw, c),
+              getPatterns().values(),
+              EMPTY_PLUGIN_CONFIG);
       Set<String> expected =
           ImmutableSet.of(
               "ERROR: blocked keyword(s) found in: foo.txt (Line: 1)"
@@ -0,0 +1,79 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Test;
+
+public class CaseFoldingPathTrieTest {
+  private final CaseFoldingPathTrie trie = new CaseFoldingPathTrie(Locale.ENGLISH);
+  private final List<String> conflicts = new ArrayList<>();
+
+  private void insert(String path) {
+    trie.insert(path, (p1, p2) -> conflicts.add(p1 + " " + p2));
+  }
+
+  @Test
+  public void componentsAreSharedByPaths() {
+    insert("a/b/c.txt");
+    insert("a/b/d.txt");
+    insert("a/e.txt");
+
+    CaseFoldingPathTrie.Node a = trie.getRoot().getChild("a");
+    assertThat(a.getPath()).isEqualTo("a");
+    assertThat(a.getChild("b").getPath()).isEqualTo("a/b");
+    assertThat(a.getChild("b").getChild("d.txt").getPath()).isEqualTo("a/b/d.txt");
+    assertThat(a.getChild("e.txt").hasPath("a/e.txt")).isTrue();
+    assertThat(a.getChild("x.txt")).isNull();
+    assertThat(conflicts).isEmpty();
+  }
+
+  @Test
+  public void componentsAreLookedUpFolded() {
+    insert("A/B.txt");
+
+    CaseFoldingPathTrie.Node b =
+        trie.getRoot().getChild(trie.fold("A")).getChild(trie.fold("b.TXT"));
+    assertThat(b.getPath()).isEqualTo("A/B.txt");
+    assertThat(b.hasPath("A/B.txt")).isTrue();
+    assertThat(b.hasPath("a/b.txt")).isFalse();
+  }
+
+  @Test
+  public void childrenKeepInsertionOrder() {
+    insert("c.txt");
+    insert("A/x.txt");
+    insert("b.txt");
+    insert("B/y.txt");
+
+    assertThat(trie.getRoot().getChildren().keySet())
+        .containsExactly("c.txt", "a", "b.txt", "b")
+        .inOrder();
+  }
+
+  @Test
+  public void conflictsAreReportedOncePerSpelling() {
+    insert("f1/a.txt");
+    insert("F1/b.txt");
+    insert("F1/c.txt");
+    insert("f1/A.TXT");
+
+    assertThat(conflicts).containsExactly("f1 F1", "f1/a.txt f1/A.TXT").inOrder();
+  }
+}
@@ -0,0 +1,124 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.createDirCacheEntry;
+import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.makeCommit;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.charset.StandardCharsets;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Test;
+
+public class CommitUtilsTest extends ValidatorTestCase {
+
+  private static byte[] content(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void changedEntriesOfRootCommit() throws Exception {
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    try (RevWalk rw = new RevWalk(repo)) {
+      RevCommit c =
+          makeCommit(
+              rw,
+              new DirCacheEntry[] {
+                createDirCacheEntry("a.txt", content("a"), testRepo),
+                createDirCacheEntry("dir/b.txt", content("b"), testRepo)
+              },
+              testRepo);
+      ImmutableList<ChangedEntry> entries = CommitUtils.getChangedEntries(repo, c, rw);
+      assertThat(entries).hasSize(2);
+      assertThat(entries.get(0).getPath()).isEqualTo("a.txt");
+      assertThat(entries.get(0).getParentCount()).isEqualTo(0);
+      assertThat(entries.get(1).getPath()).isEqualTo("dir/b.txt");
+      assertThat(entries.get(1).isFile()).isTrue();
+    }
+  }
+
+  @Test
+  public void changedEntriesAgainstParent() throws Exception {
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    try (RevWalk rw = new RevWalk(repo)) {
+      RevCommit parent =
+          makeCommit(
+              rw,
+              new DirCacheEntry[] {
+                createDirCacheEntry("kept.txt", content("kept"), testRepo),
+                createDirCacheEntry("modified.txt", content("old"), testRepo),
+                createDirCacheEntry("deleted.txt", content("deleted"), testRepo)
+              },
+              testRepo);
+      RevCommit c =
+          makeCommit(
+              rw,
+              new DirCacheEntry[] {
+                createDirCacheEntry("added.txt", content("added"), testRepo),
+                createDirCacheEntry("kept.txt", content("kept"), testRepo),
+                createDirCacheEntry("modified.txt", content("new"), testRepo)
+              },
+              testRepo,
+              parent);
+      ImmutableList<ChangedEntry> entries = CommitUtils.getChangedEntries(repo, c, rw);
+      assertThat(entries).hasSize(3);
+      assertThat(entries.get(0).getPath()).isEqualTo("added.txt");
+      assertThat(entries.get(0).getParentRawMode(0)).isEqualTo(FileMode.MISSING.getBits());
+      assertThat(entries.get(1).getPath()).isEqualTo("deleted.txt");
+      assertThat(entries.get(1).isDeleted()).isTrue();
+      assertThat(entries.get(2).getPath()).isEqualTo("modified.txt");
+      assertThat(entries.get(2).getParentObjectId(0)).isNotEqualTo(entries.get(2).getObjectId());
+      assertThat(CommitUtils.getChangedPaths(entries)).containsExactly("added.txt", "modified.txt");
+    }
+  }
+
+  @Test
+  public void entriesEqualToOneParentOfMergeAreSkipped() throws Exception {
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    try (RevWalk rw = new RevWalk(repo)) {
+      RevCommit p1 =
+          makeCommit(
+              rw,
+              new DirCacheEntry[] {createDirCacheEntry("a.txt", content("a1"), testRepo)},
+              testRepo);
+      RevCommit p2 =
+          makeCommit(
+              rw,
+              new DirCacheEntry[] {createDirCacheEntry("a.txt", content("a2"), testRepo)},
+              testRepo);
+      RevCommit merge =
+          makeCommit(
+              rw,
+              new DirCacheEntry[] {
+                createDirCacheEntry("a.txt", content("a2"), testRepo),
+                createDirCacheEntry("b.txt", content("b"), testRepo)
+              },
+              testRepo,
+              p1,
+              p2);
+      ImmutableList<ChangedEntry> entries = CommitUtils.getChangedEntries(repo, merge, rw);
+      assertThat(entries).hasSize(1);
+      assertThat(entries.get(0).getPath()).isEqualTo("b.txt");
+      assertThat(entries.get(0).getParentCount()).isEqualTo(2);
+      assertThat(entries.get(0).getParentRawMode(1)).isEqualTo(FileMode.MISSING.getBits());
+    }
+  }
+}
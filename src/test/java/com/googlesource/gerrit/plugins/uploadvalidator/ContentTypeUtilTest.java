@@ -17,17 +17,92 @@ package com.googlesource.gerrit.plugins.uploadvalidator;
 import static com.google.common.truth.Truth.assertThat;
 import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.EMPTY_PLUGIN_CONFIG;
 import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.PATTERN_CACHE;
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.server.config.PluginConfig;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ExecutionException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectLoader.SmallObject;
+import org.eclipse.jgit.lib.ObjectStream;
 import org.junit.Before;
 import org.junit.Test;
 
 public class ContentTypeUtilTest {
+  private Cache<String, String> contentTypeCache;
   private ContentTypeUtil ctu;
 
   @Before
   public void setUp() {
-    ctu = new ContentTypeUtil(PATTERN_CACHE);
+    contentTypeCache = CacheBuilder.newBuilder().build();
+    ctu = new ContentTypeUtil(PATTERN_CACHE, contentTypeCache, 16);
+  }
+
+  @Test
+  public void contentTypeIsDetectedOncePerBlobAndFileName() throws Exception {
+    ObjectId blobId = ObjectId.fromString("0123456789012345678901234567890123456789");
+    byte[] xml = "<?xml version=\"1.0\"?><a><b>c</b></a>".getBytes(StandardCharsets.UTF_8);
+
+    assertThat(ctu.getContentType(blobId, new SmallObject(OBJ_BLOB, xml), "dir/foo.xml"))
+        .isEqualTo("application/xml");
+    assertThat(contentTypeCache.asMap())
+        .containsExactly(blobId.name() + ":16:foo.xml", "application/xml");
+
+    ObjectLoader failing =
+        new SmallObject(OBJ_BLOB, xml) {
+          @Override
+          public ObjectStream openStream() {
+            throw new AssertionError("content type must be served from the cache");
+          }
+        };
+    assertThat(ctu.getContentType(blobId, failing, "other/foo.xml")).isEqualTo("application/xml");
+
+    // A type detected with another prefix size is not reused.
+    ContentTypeUtil longerPrefix = new ContentTypeUtil(PATTERN_CACHE, contentTypeCache, 32);
+    assertThat(longerPrefix.getContentType(blobId, new SmallObject(OBJ_BLOB, xml), "foo.xml"))
+        .isEqualTo("application/xml");
+    assertThat(contentTypeCache.asMap()).containsKey(blobId.name() + ":32:foo.xml");
+  }
+
+  @Test
+  public void onlyPrefixIsRead() throws Exception {
+    byte[] content = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+    assertThat(
+            new String(ctu.readPrefix(new SmallObject(OBJ_BLOB, content)), StandardCharsets.UTF_8))
+        .isEqualTo("0123456789abcdef");
+    assertThat(ctu.readPrefix(new SmallObject(OBJ_BLOB, new byte[4]))).hasLength(4);
+  }
+
+  @Test
+  public void invalidPrefixSizeFallsBackToDefault() {
+    assertThat(ContentTypeUtil.getContentPrefixSize(EMPTY_PLUGIN_CONFIG))
+        .isEqualTo(ContentTypeUtil.DEFAULT_CONTENT_PREFIX_SIZE);
+    assertThat(ContentTypeUtil.getContentPrefixSize(prefixSizeConfig(64))).isEqualTo(64);
+    assertThat(ContentTypeUtil.getContentPrefixSize(prefixSizeConfig(0)))
+        .isEqualTo(ContentTypeUtil.DEFAULT_CONTENT_PREFIX_SIZE);
+    assertThat(ContentTypeUtil.getContentPrefixSize(prefixSizeConfig(-1)))
+        .isEqualTo(ContentTypeUtil.DEFAULT_CONTENT_PREFIX_SIZE);
+  }
+
+  private static PluginConfig prefixSizeConfig(int size) {
+    Config cfg = new Config();
+    cfg.setInt("plugin", "uploadvalidator", "contentPrefixSize", size);
+    return PluginConfig.create("uploadvalidator", cfg, null);
+  }
+
+  @Test
+  public void binaryDetectedFromPrefix() throws Exception {
+    ObjectId blobId = ObjectId.fromString("0123456789012345678901234567890123456789");
+    byte[] binary = new byte[] {'a', 'b', 0, 'c'};
+    byte[] text = "text which is longer than the prefix".getBytes(StandardCharsets.UTF_8);
+    assertThat(ctu.isBinary(blobId, new SmallObject(OBJ_BLOB, binary), "foo", EMPTY_PLUGIN_CONFIG))
+        .isTrue();
+    assertThat(ctu.isBinary(blobId, new SmallObject(OBJ_BLOB, text), "foo", EMPTY_PLUGIN_CONFIG))
+        .isFalse();
   }
 
   @Test
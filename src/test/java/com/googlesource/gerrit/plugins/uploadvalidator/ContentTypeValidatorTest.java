@@ -16,7 +16,6 @@ package com.googlesource.gerrit.plugins.uploadvalidator;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.EMPTY_PLUGIN_CONFIG;
-import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.PATTERN_CACHE;
 
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
 import java.io.File;
@@ -59,8 +58,7 @@ public class ContentTypeValidatorTest extends ValidatorTestCase {
 
   @Before
   public void setUp() {
-    validator =
-        new ContentTypeValidator(null, new ContentTypeUtil(PATTERN_CACHE), null, null, null);
+    validator = new ContentTypeValidator(TestUtils.createContentTypeUtil());
   }
 
   @Test
@@ -69,7 +67,8 @@ public class ContentTypeValidatorTest extends ValidatorTestCase {
 
     try (RevWalk rw = new RevWalk(repo)) {
       List<CommitValidationMessage> m =
-          validator.performValidation(repo, makeCommit(rw), rw, patterns, false);
+          validator.performValidation(
+              TestUtils.createCommitContext(repo, rw, makeCommit(rw)), patterns, false);
       assertThat(TestUtils.transformMessages(m))
           .containsExactly(
               "ERROR: found blocked content type (application/pdf) in file: foo.pdf",
@@ -84,7 +83,8 @@ public class ContentTypeValidatorTest extends ValidatorTestCase {
 
     try (RevWalk rw = new RevWalk(repo)) {
       List<CommitValidationMessage> m =
-          validator.performValidation(repo, makeCommit(rw), rw, patterns, true);
+          validator.performValidation(
+              TestUtils.createCommitContext(repo, rw, makeCommit(rw)), patterns, true);
       assertThat(TestUtils.transformMessages(m))
           .containsExactly("ERROR: found blocked content type (text/html) in file: foo.html");
     }
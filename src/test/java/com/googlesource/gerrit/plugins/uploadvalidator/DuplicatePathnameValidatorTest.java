@@ -23,17 +23,25 @@ import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.createEm
 import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.makeCommit;
 import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.transformMessage;
 import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.transformMessages;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import org.eclipse.jgit.dircache.DirCacheEntry;
 import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
@@ -42,12 +50,14 @@ import org.junit.Before;
 import org.junit.Test;
 
 public class DuplicatePathnameValidatorTest extends ValidatorTestCase {
+  // The folders f1 and f2/sF1 have the same tree, hence they share their index.
   private static final ImmutableList<String> INITIAL_PATHNAMES =
       ImmutableList.of("a", "ab", "f1/a", "f1/ab", "f2/a", "f2/ab", "f2/sF1/a", "f2/sF1/ab");
 
-  private final List<String> vistedPaths = Lists.newArrayList();
+  private final List<String> indexedFolders = Lists.newArrayList();
   private final List<CommitValidationMessage> messages = Lists.newArrayList();
 
+  private Cache<String, TreeNameIndex> cache;
   private TestRepository<Repository> testRepo;
   private Set<String> changedPaths;
   private DuplicatePathnameValidator validator;
@@ -56,76 +66,101 @@ public class DuplicatePathnameValidatorTest extends ValidatorTestCase {
       List<String> existingTreePaths,
       Set<String> testPaths,
       List<CommitValidationMessage> messages,
-      List<String> visitedPaths)
+      List<String> indexedFolders)
       throws Exception {
     RevCommit c =
         makeCommit(
             testRepo.getRevWalk(),
             createEmptyDirCacheEntries(existingTreePaths, testRepo),
             testRepo);
-    try (TreeWalk tw = new TreeWalk(repo)) {
-      tw.setRecursive(false);
-      tw.addTree(c.getTree());
-      tw.setFilter(new ListVisitedPathsFilter(visitedPaths));
-      validator.checkForDuplicatesAgainstTheWholeTree(tw, testPaths, messages);
+    try (ObjectReader reader = repo.newObjectReader()) {
+      validator.checkForDuplicatesAgainstTheWholeTree(
+          Locale.ENGLISH, reader, c.getTree(), testPaths, messages);
+      for (String folder : existingTreeFolders(existingTreePaths)) {
+        ObjectId tree =
+            folder.isEmpty()
+                ? c.getTree()
+                : TreeWalk.forPath(reader, folder, c.getTree()).getObjectId(0);
+        if (cache.getIfPresent(TreeNameIndexCache.key(Locale.ENGLISH, tree)) != null) {
+          indexedFolders.add(folder);
+        }
+      }
     }
   }
 
+  private List<String> existingTreeFolders(List<String> existingTreePaths) {
+    List<String> folders = Lists.newArrayList("");
+    folders.addAll(allParentFolders(existingTreePaths));
+    return folders;
+  }
+
+  private static Set<String> allParentFolders(Collection<String> paths) {
+    Set<String> folders = new HashSet<>();
+    for (String cp : paths) {
+      int n = cp.indexOf('/');
+      while (n > -1) {
+        String s = cp.substring(0, n);
+        folders.add(s);
+        n = cp.indexOf('/', n + 1);
+      }
+    }
+    return folders;
+  }
+
   @Override
   @Before
   public void init() throws IOException {
     super.init();
     testRepo = new TestRepository<>(repo);
-    validator = new DuplicatePathnameValidator(null, null, null, null);
-    validator.setLocale(Locale.ENGLISH);
+    cache = CacheBuilder.newBuilder().build();
+    validator = new DuplicatePathnameValidator(new TreeNameIndexCache(cache));
   }
 
   @Test
   public void testSkipSubTreesWithImproperPrefix() throws Exception {
     changedPaths = Sets.newHashSet("f1/A");
-    runCheck(INITIAL_PATHNAMES, changedPaths, messages, vistedPaths);
+    runCheck(INITIAL_PATHNAMES, changedPaths, messages, indexedFolders);
     assertThat(transformMessages(messages))
         .containsExactly(transformMessage(conflict("f1/A", "f1/a")));
-    assertThat(vistedPaths).containsExactly("a", "ab", "f1", "f1/a", "f1/ab", "f2");
+    assertThat(indexedFolders).containsExactly("", "f1", "f2/sF1");
   }
 
   @Test
   public void testFindConflictingSubtree() throws Exception {
     changedPaths = Sets.newHashSet("F1/a");
-    runCheck(INITIAL_PATHNAMES, changedPaths, messages, vistedPaths);
+    runCheck(INITIAL_PATHNAMES, changedPaths, messages, indexedFolders);
     assertThat(transformMessages(messages)).containsExactly(transformMessage(conflict("F1", "f1")));
-    assertThat(vistedPaths).containsExactly("a", "ab", "f1", "f2");
+    assertThat(indexedFolders).containsExactly("");
   }
 
   @Test
   public void testFindConflictingSubtree2() throws Exception {
     changedPaths = Sets.newHashSet("f2/sf1", "F1/a");
-    runCheck(INITIAL_PATHNAMES, changedPaths, messages, vistedPaths);
+    runCheck(INITIAL_PATHNAMES, changedPaths, messages, indexedFolders);
     assertThat(transformMessages(messages))
         .containsExactly(
             transformMessage(conflict("F1", "f1")), transformMessage(conflict("f2/sf1", "f2/sF1")));
-    assertThat(vistedPaths).containsExactly("a", "ab", "f1", "f2", "f2/a", "f2/ab", "f2/sF1");
+    assertThat(indexedFolders).containsExactly("", "f2");
   }
 
   @Test
   public void testFindDuplicates() throws Exception {
     changedPaths = Sets.newHashSet("AB", "f1/A", "f2/Ab");
-    runCheck(INITIAL_PATHNAMES, changedPaths, messages, vistedPaths);
+    runCheck(INITIAL_PATHNAMES, changedPaths, messages, indexedFolders);
     assertThat(transformMessages(messages))
         .containsExactly(
             transformMessage(conflict("AB", "ab")),
             transformMessage(conflict("f1/A", "f1/a")),
             transformMessage(conflict("f2/Ab", "f2/ab")));
-    assertThat(vistedPaths)
-        .containsExactly("a", "ab", "f1", "f1/a", "f1/ab", "f2", "f2/a", "f2/ab", "f2/sF1");
+    assertThat(indexedFolders).containsExactly("", "f1", "f2", "f2/sF1");
   }
 
   @Test
   public void testFindNoDuplicates() throws Exception {
     changedPaths = Sets.newHashSet("a", "ab", "f1/ab");
-    runCheck(INITIAL_PATHNAMES, changedPaths, messages, vistedPaths);
+    runCheck(INITIAL_PATHNAMES, changedPaths, messages, indexedFolders);
     assertThat(messages).isEmpty();
-    assertThat(vistedPaths).containsExactly("a", "ab", "f1", "f1/a", "f1/ab", "f2");
+    assertThat(indexedFolders).containsExactly("", "f1", "f2/sF1");
   }
 
   @Test
@@ -137,7 +172,9 @@ public class DuplicatePathnameValidatorTest extends ValidatorTestCase {
     filenames.add("f2/sF1/aB");
     try (RevWalk rw = new RevWalk(repo)) {
       RevCommit c = makeCommit(rw, createEmptyDirCacheEntries(filenames, testRepo), testRepo);
-      List<CommitValidationMessage> m = validator.performValidation(repo, c, rw);
+      List<CommitValidationMessage> m =
+          validator.performValidation(
+              Locale.ENGLISH, rw, c, CommitUtils.getChangedEntries(repo, c, rw));
       assertThat(m).hasSize(4);
       // During checking inside of the commit it's unknown which file is checked
       // first, because of that, both capabilities must be checked.
@@ -173,11 +210,124 @@ public class DuplicatePathnameValidatorTest extends ValidatorTestCase {
             createDirCacheEntry(INITIAL_PATHNAMES.get(x).toUpperCase(), EMPTY_CONTENT, testRepo);
       }
       RevCommit c1 = makeCommit(rw, entries, testRepo, c);
-      List<CommitValidationMessage> m = validator.performValidation(repo, c1, rw);
+      List<CommitValidationMessage> m =
+          validator.performValidation(
+              Locale.ENGLISH, rw, c1, CommitUtils.getChangedEntries(repo, c1, rw));
       assertThat(m).isEmpty();
     }
   }
 
+  @Test
+  public void testCheckAgainstParent() throws Exception {
+    try (RevWalk rw = new RevWalk(repo)) {
+      RevCommit p =
+          makeCommit(rw, createEmptyDirCacheEntries(INITIAL_PATHNAMES, testRepo), testRepo);
+      List<String> filenames = Lists.newArrayList(INITIAL_PATHNAMES);
+      filenames.add("f2/sF1/AB");
+      RevCommit c = makeCommit(rw, createEmptyDirCacheEntries(filenames, testRepo), testRepo, p);
+      List<CommitValidationMessage> m =
+          validator.performValidation(
+              Locale.ENGLISH, rw, c, CommitUtils.getChangedEntries(repo, c, rw));
+      assertThat(transformMessages(m))
+          .containsExactly(transformMessage(conflict("f2/sF1/AB", "f2/sF1/ab")));
+
+      // The trees of the parent were indexed and are reused by the next check.
+      long indexed = cache.size();
+      validator.performValidation(
+          Locale.ENGLISH, rw, c, CommitUtils.getChangedEntries(repo, c, rw));
+      assertThat(cache.size()).isEqualTo(indexed);
+    }
+  }
+
+  @Test
+  public void testCheckAgainstSecondParentOfMerge() throws Exception {
+    try (RevWalk rw = new RevWalk(repo)) {
+      RevCommit p1 =
+          makeCommit(rw, createEmptyDirCacheEntries(ImmutableList.of("a"), testRepo), testRepo);
+      RevCommit p2 =
+          makeCommit(
+              rw, createEmptyDirCacheEntries(ImmutableList.of("a", "f1/b"), testRepo), testRepo);
+      RevCommit merge =
+          makeCommit(
+              rw,
+              createEmptyDirCacheEntries(ImmutableList.of("a", "f1/b", "F1/c"), testRepo),
+              testRepo,
+              p1,
+              p2);
+      List<CommitValidationMessage> m =
+          validator.performValidation(
+              Locale.ENGLISH, rw, merge, CommitUtils.getChangedEntries(repo, merge, rw));
+      assertThat(transformMessages(m)).containsExactly(transformMessage(conflict("F1", "f1")));
+    }
+  }
+
+  @Test
+  public void testCheckSubmoduleAndSymlinkAgainstFiles() throws Exception {
+    try (RevWalk rw = new RevWalk(repo)) {
+      RevCommit p =
+          makeCommit(rw, createEmptyDirCacheEntries(ImmutableList.of("a"), testRepo), testRepo);
+      DirCacheEntry submodule = new DirCacheEntry("Lib");
+      submodule.setFileMode(FileMode.GITLINK);
+      submodule.setObjectId(p);
+      DirCacheEntry symlink = createDirCacheEntry("B", "a".getBytes(UTF_8), testRepo);
+      symlink.setFileMode(FileMode.SYMLINK);
+      RevCommit c =
+          makeCommit(
+              rw,
+              new DirCacheEntry[] {
+                createDirCacheEntry("a", EMPTY_CONTENT, testRepo),
+                submodule,
+                symlink,
+                createDirCacheEntry("b", EMPTY_CONTENT, testRepo),
+                createDirCacheEntry("lib/x", EMPTY_CONTENT, testRepo)
+              },
+              testRepo,
+              p);
+      List<CommitValidationMessage> m =
+          validator.performValidation(
+              Locale.ENGLISH, rw, c, CommitUtils.getChangedEntries(repo, c, rw));
+      assertThat(transformMessages(m))
+          .containsExactly(
+              transformMessage(conflict("b", "B")), transformMessage(conflict("lib", "Lib")));
+    }
+  }
+
+  @Test
+  public void testSymlinksAreNotCheckedAgainstUnchangedFiles() throws Exception {
+    try (RevWalk rw = new RevWalk(repo)) {
+      RevCommit p =
+          makeCommit(rw, createEmptyDirCacheEntries(ImmutableList.of("a"), testRepo), testRepo);
+      DirCacheEntry symlink = createDirCacheEntry("A", "a".getBytes(UTF_8), testRepo);
+      symlink.setFileMode(FileMode.SYMLINK);
+      RevCommit c =
+          makeCommit(
+              rw,
+              new DirCacheEntry[] {createDirCacheEntry("a", EMPTY_CONTENT, testRepo), symlink},
+              testRepo,
+              p);
+      assertThat(
+              validator.performValidation(
+                  Locale.ENGLISH, rw, c, CommitUtils.getChangedEntries(repo, c, rw)))
+          .isEmpty();
+    }
+  }
+
+  @Test
+  public void localeIsNotSharedBetweenChecks() throws Exception {
+    try (RevWalk rw = new RevWalk(repo)) {
+      RevCommit c =
+          makeCommit(
+              rw, createEmptyDirCacheEntries(ImmutableList.of("I", "i"), testRepo), testRepo);
+      List<ChangedEntry> entries = CommitUtils.getChangedEntries(repo, c, rw);
+      // In Turkish the lower case of I is the dotless i.
+      assertThat(validator.performValidation(Locale.forLanguageTag("tr"), rw, c, entries))
+          .isEmpty();
+      assertThat(validator.performValidation(Locale.ENGLISH, rw, c, entries)).hasSize(1);
+      assertThat(validator.performValidation(Locale.forLanguageTag("tr"), rw, c, entries))
+          .isEmpty();
+    }
+  }
+
   @Test
   public void validatorInactiveWhenConfigEmpty() {
     assertThat(DuplicatePathnameValidator.isActive(EMPTY_PLUGIN_CONFIG)).isFalse();
@@ -187,10 +337,4 @@ public class DuplicatePathnameValidatorTest extends ValidatorTestCase {
   public void defaultLocale() {
     assertThat(DuplicatePathnameValidator.getLocale(EMPTY_PLUGIN_CONFIG)).isEqualTo(Locale.ENGLISH);
   }
-
-  @Test
-  public void testGetParentFolder() {
-    assertThat(validator.allParentFolders(INITIAL_PATHNAMES))
-        .containsExactlyElementsIn(ImmutableList.of("f1", "f2", "f2/sF1"));
-  }
 }
@@ -56,7 +56,8 @@ public class FileExtensionValidatorTest extends ValidatorTestCase {
     try (RevWalk rw = new RevWalk(repo)) {
       RevCommit c = makeCommit(rw, BLOCKED_EXTENSIONS_LC);
       List<CommitValidationMessage> m =
-          FileExtensionValidator.performValidation(repo, c, rw, BLOCKED_EXTENSIONS_LC);
+          FileExtensionValidator.performValidation(
+              CommitUtils.getChangedEntries(repo, c, rw), BLOCKED_EXTENSIONS_LC);
       List<String> expected = new ArrayList<>();
       for (String extension : BLOCKED_EXTENSIONS_LC) {
         expected.add("ERROR: blocked file: foo." + extension);
@@ -70,7 +71,8 @@ public class FileExtensionValidatorTest extends ValidatorTestCase {
     try (RevWalk rw = new RevWalk(repo)) {
       RevCommit c = makeCommit(rw, BLOCKED_EXTENSIONS_UC);
       List<CommitValidationMessage> m =
-          FileExtensionValidator.performValidation(repo, c, rw, BLOCKED_EXTENSIONS_LC);
+          FileExtensionValidator.performValidation(
+              CommitUtils.getChangedEntries(repo, c, rw), BLOCKED_EXTENSIONS_LC);
       List<String> expected = new ArrayList<>();
       for (String extension : BLOCKED_EXTENSIONS_UC) {
         expected.add("ERROR: blocked file: foo." + extension);
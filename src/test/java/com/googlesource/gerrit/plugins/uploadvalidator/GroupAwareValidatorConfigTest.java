@@ -19,7 +19,9 @@ import static com.google.common.truth.Truth.assertThat;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.gerrit.entities.AccountGroup;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.util.time.TimeUtil;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 
 public class GroupAwareValidatorConfigTest {
@@ -112,4 +114,40 @@ public class GroupAwareValidatorConfigTest {
                 ImmutableListMultimap.of()))
         .isFalse();
   }
+
+  @Test
+  public void groupsAreLookedUpOncePerPush() throws Exception {
+    String config =
+        "[plugin \"uploadvalidator\"]\n" + "blockedFileExtension = jar\n" + "group=fooGroup\n";
+    AtomicInteger lookups = new AtomicInteger();
+    FakeGroupByNameFinder finder = new FakeGroupByNameFinder();
+    FakeConfigFactory configFactory = new FakeConfigFactory(projectName, config);
+    ValidatorConfig validatorConfig =
+        new ValidatorConfig(
+            pluginName,
+            configFactory,
+            name -> {
+              lookups.incrementAndGet();
+              return finder.get(name);
+            });
+
+    ValidatorConfig.Filter filter =
+        validatorConfig.compile(projectName, configFactory.get(projectName));
+    IdentifiedUser user = new FakeUserProvider("fooGroup").get();
+    for (int i = 0; i < 3; i++) {
+      assertThat(
+              filter.isEnabled(user, "anyRef", "blockedFileExtension", ImmutableListMultimap.of()))
+          .isTrue();
+    }
+    assertThat(lookups.get()).isEqualTo(1);
+
+    assertThat(
+            filter.isEnabled(
+                new FakeUserProvider("barGroup").get(),
+                "anyRef",
+                "blockedFileExtension",
+                ImmutableListMultimap.of()))
+        .isFalse();
+    assertThat(lookups.get()).isEqualTo(2);
+  }
 }
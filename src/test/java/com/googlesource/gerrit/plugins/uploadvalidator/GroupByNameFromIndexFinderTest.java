@@ -0,0 +1,104 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.AccountGroup;
+import com.google.gerrit.entities.InternalGroup;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.server.query.group.InternalGroupQuery;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.googlesource.gerrit.plugins.uploadvalidator.ValidatorConfig.GroupByNameFromIndexFinder;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GroupByNameFromIndexFinderTest {
+  private static final AccountGroup.NameKey FOO = AccountGroup.nameKey("foo");
+  private static final AccountGroup.NameKey BAR = AccountGroup.nameKey("bar");
+
+  private InternalGroupQuery query;
+  private GroupByNameFromIndexFinder finder;
+
+  @Before
+  public void setUp() {
+    query = mock(InternalGroupQuery.class);
+    finder = new GroupByNameFromIndexFinder(() -> query, CacheBuilder.newBuilder().build());
+  }
+
+  private static InternalGroup group(AccountGroup.NameKey name, String uuid) {
+    return InternalGroup.builder()
+        .setId(AccountGroup.id(1))
+        .setNameKey(name)
+        .setGroupUUID(AccountGroup.uuid(uuid))
+        .setOwnerGroupUUID(AccountGroup.uuid(uuid))
+        .setVisibleToAll(false)
+        .setCreatedOn(TimeUtil.now())
+        .setMembers(ImmutableSet.of())
+        .setSubgroups(ImmutableSet.of())
+        .build();
+  }
+
+  @Test
+  public void lookupIsCached() {
+    Optional<InternalGroup> foo = Optional.of(group(FOO, "foo-uuid"));
+    when(query.byName(FOO)).thenReturn(foo);
+    when(query.byName(BAR)).thenReturn(Optional.empty());
+
+    assertThat(finder.get(FOO)).isEqualTo(foo);
+    assertThat(finder.get(FOO)).isEqualTo(foo);
+    assertThat(finder.get(BAR)).isEqualTo(Optional.empty());
+    assertThat(finder.get(BAR)).isEqualTo(Optional.empty());
+    verify(query, times(1)).byName(FOO);
+    verify(query, times(1)).byName(BAR);
+  }
+
+  @Test
+  public void reindexedGroupIsEvicted() {
+    Optional<InternalGroup> foo = Optional.of(group(FOO, "foo-uuid"));
+    when(query.byName(FOO)).thenReturn(foo);
+    when(query.byName(BAR)).thenReturn(Optional.empty());
+    finder.get(FOO);
+    finder.get(BAR);
+
+    finder.onGroupIndexed("other-uuid");
+    finder.get(FOO);
+    verify(query, times(1)).byName(FOO);
+
+    // Renaming foo to bar reindexes the group.
+    Optional<InternalGroup> bar = Optional.of(group(BAR, "foo-uuid"));
+    when(query.byName(FOO)).thenReturn(Optional.empty());
+    when(query.byName(BAR)).thenReturn(bar);
+    finder.onGroupIndexed("foo-uuid");
+    assertThat(finder.get(FOO)).isEqualTo(Optional.empty());
+    assertThat(finder.get(BAR)).isEqualTo(bar);
+  }
+
+  @Test
+  public void failedLookupIsNotCached() {
+    Optional<InternalGroup> foo = Optional.of(group(FOO, "foo-uuid"));
+    when(query.byName(FOO)).thenThrow(new StorageException("index unavailable")).thenReturn(foo);
+
+    assertThat(finder.get(FOO)).isEqualTo(Optional.empty());
+    assertThat(finder.get(FOO)).isEqualTo(foo);
+  }
+}
@@ -16,13 +16,17 @@ package com.googlesource.gerrit.plugins.uploadvalidator;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.EMPTY_PLUGIN_CONFIG;
+import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.PATTERN_CACHE;
 
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.regex.Pattern;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
@@ -53,11 +57,13 @@ public class InvalidFilenameValidatorTest extends ValidatorTestCase {
 
   @Test
   public void test() throws Exception {
-    String[] invalidFilenamePattern = {"\\[|\\]|\\*|#", "[%:@]"};
+    Collection<Pattern> invalidFilenamePattern =
+        PATTERN_CACHE.getAll(Arrays.asList("\\[|\\]|\\*|#", "[%:@]")).values();
     try (RevWalk rw = new RevWalk(repo)) {
       RevCommit c = makeCommit(rw);
       List<CommitValidationMessage> m =
-          InvalidFilenameValidator.performValidation(repo, c, rw, invalidFilenamePattern);
+          InvalidFilenameValidator.performValidation(
+              CommitUtils.getChangedEntries(repo, c, rw), invalidFilenamePattern);
       Set<String> expected = new HashSet<>();
       for (String filenames : getInvalidFilenames()) {
         expected.add("ERROR: invalid characters found in filename: " + filenames);
@@ -16,9 +16,23 @@ package com.googlesource.gerrit.plugins.uploadvalidator;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.EMPTY_PLUGIN_CONFIG;
-import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.PATTERN_CACHE;
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
+import com.google.gerrit.server.patch.DiffOperations;
+import com.google.gerrit.server.patch.DiffOptions;
+import com.google.gerrit.server.patch.filediff.Edit;
+import com.google.gerrit.server.patch.filediff.FileDiffOutput;
+import com.google.gerrit.server.patch.filediff.TaggedEdit;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -26,6 +40,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.errors.LargeObjectException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectLoader.SmallObject;
+import org.eclipse.jgit.lib.ObjectStream;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.junit.Test;
@@ -52,15 +71,96 @@ public class InvalidLineEndingValidatorTest extends ValidatorTestCase {
     try (RevWalk rw = new RevWalk(repo)) {
       RevCommit c = makeCommit(rw);
       InvalidLineEndingValidator validator =
-          new InvalidLineEndingValidator(
-              null, new ContentTypeUtil(PATTERN_CACHE), null, null, null);
+          new InvalidLineEndingValidator(TestUtils.createContentTypeUtil(), null);
       List<CommitValidationMessage> m =
-          validator.performValidation(repo, c, rw, EMPTY_PLUGIN_CONFIG);
+          validator.performValidation(
+              TestUtils.createCommitContext(repo, rw, c), EMPTY_PLUGIN_CONFIG);
       assertThat(TestUtils.transformMessages(m))
           .containsExactly("ERROR: found carriage return (CR) character in file: foo.txt");
     }
   }
 
+  @Test
+  public void carriageReturnInEditsOnly() throws Exception {
+    ImmutableMap<String, FileDiffOutput> diffs =
+        ImmutableMap.of(
+            // Only the second line of foo.txt, which has no CR, was edited.
+            "foo.txt", fileDiff(Edit.create(1, 1, 1, 2)),
+            "bar.txt", fileDiff(Edit.create(0, 0, 0, 4)),
+            "baz.txt", fileDiff(Edit.create(0, 1, 0, 1)));
+    DiffOperations diffOperationsMock = mock(DiffOperations.class);
+    when(diffOperationsMock.listModifiedFilesAgainstParent(
+            any(Project.NameKey.class), any(), anyInt(), any(DiffOptions.class)))
+        .thenReturn(diffs);
+
+    Map<File, byte[]> files = new HashMap<>();
+    files.put(
+        new File(repo.getDirectory().getParent(), "baz.txt"),
+        "Testline1\r\nTestline2\n".getBytes(StandardCharsets.UTF_8));
+    try (RevWalk rw = new RevWalk(repo)) {
+      makeCommit(rw);
+      RevCommit c = TestUtils.makeCommit(rw, repo, "Commit with CR in edit.", files);
+      InvalidLineEndingValidator validator =
+          new InvalidLineEndingValidator(TestUtils.createContentTypeUtil(), diffOperationsMock);
+      Config cfg = new Config();
+      cfg.setBoolean("plugin", "uploadvalidator", "rejectWindowsLineEndings", true);
+      cfg.setBoolean("plugin", "uploadvalidator", "rejectWindowsLineEndingsInEditsOnly", true);
+      List<CommitValidationMessage> m =
+          ValidationEngine.validate(
+              TestUtils.createCommitContext(repo, rw, c),
+              validator.create(PluginConfig.create("uploadvalidator", cfg, null)));
+      assertThat(TestUtils.transformMessages(m))
+          .containsExactly("ERROR: found carriage return (CR) character in file: baz.txt");
+    }
+  }
+
+  private static FileDiffOutput fileDiff(Edit edit) {
+    FileDiffOutput fileDiff = mock(FileDiffOutput.class);
+    when(fileDiff.edits())
+        .thenReturn(ImmutableList.of(TaggedEdit.create(edit, /* dueToRebase= */ false)));
+    return fileDiff;
+  }
+
+  @Test
+  public void carriageReturnInRawBytes() throws Exception {
+    byte[] withCR = "line1\nline2\r\n".getBytes(StandardCharsets.UTF_8);
+    byte[] withoutCR = "line1\nline2\n".getBytes(StandardCharsets.UTF_8);
+    assertThat(InvalidLineEndingValidator.containsCR(new SmallObject(OBJ_BLOB, withCR))).isTrue();
+    assertThat(InvalidLineEndingValidator.containsCR(new SmallObject(OBJ_BLOB, withoutCR)))
+        .isFalse();
+    assertThat(InvalidLineEndingValidator.containsCR(largeObject(withCR))).isTrue();
+    assertThat(InvalidLineEndingValidator.containsCR(largeObject(withoutCR))).isFalse();
+  }
+
+  private static ObjectLoader largeObject(byte[] content) {
+    return new ObjectLoader() {
+      @Override
+      public int getType() {
+        return OBJ_BLOB;
+      }
+
+      @Override
+      public long getSize() {
+        return content.length;
+      }
+
+      @Override
+      public boolean isLarge() {
+        return true;
+      }
+
+      @Override
+      public byte[] getCachedBytes() throws LargeObjectException {
+        throw new LargeObjectException();
+      }
+
+      @Override
+      public ObjectStream openStream() {
+        return new ObjectStream.Filter(OBJ_BLOB, content.length, new ByteArrayInputStream(content));
+      }
+    };
+  }
+
   @Test
   public void validatorInactiveWhenConfigEmpty() {
     assertThat(InvalidLineEndingValidator.isActive(EMPTY_PLUGIN_CONFIG)).isFalse();
@@ -0,0 +1,77 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class KeywordMatcherTest {
+
+  private static KeywordMatcher matcher(String... regexes) {
+    ImmutableList.Builder<Pattern> patterns = ImmutableList.builder();
+    for (String regex : regexes) {
+      patterns.add(Pattern.compile(regex));
+    }
+    return new KeywordMatcher(patterns.build());
+  }
+
+  @Test
+  public void literals() {
+    assertThat(KeywordMatcher.toLiteral("myp4ssw0rd")).isEqualTo("myp4ssw0rd");
+    assertThat(KeywordMatcher.toLiteral("foo\\.bar\\.tld")).isEqualTo("foo.bar.tld");
+    assertThat(KeywordMatcher.toLiteral("foo.bar")).isNull();
+    assertThat(KeywordMatcher.toLiteral("\\d+")).isNull();
+    assertThat(KeywordMatcher.toLiteral("")).isNull();
+  }
+
+  @Test
+  public void matchesAreGroupedByPatternInConfiguredOrder() {
+    KeywordMatcher m = matcher("foobar", "myp4ssw0rd", "\\$(Id|Header):[^$]*\\$");
+    assertThat(m.find("x myp4ssw0rd foobar $Id: foo$ foobar"))
+        .containsExactly("foobar", "foobar", "myp4ssw0rd", "$Id: foo$")
+        .inOrder();
+  }
+
+  @Test
+  public void overlappingOccurrencesOfOneLiteralAreReportedOnce() {
+    assertThat(matcher("aa").find("aaa")).containsExactly("aa");
+    assertThat(matcher("aa").find("aaaa")).containsExactly("aa", "aa");
+  }
+
+  @Test
+  public void literalsSharingPrefixesAndSuffixes() {
+    KeywordMatcher m = matcher("he", "she", "his", "hers");
+    assertThat(m.find("ushers")).containsExactly("he", "she", "hers").inOrder();
+  }
+
+  @Test
+  public void sameLiteralInSeveralPatterns() {
+    assertThat(matcher("foo", "foo").find("foo")).containsExactly("foo", "foo");
+  }
+
+  @Test
+  public void regexesWhichCannotBeCombined() {
+    KeywordMatcher m = matcher("(a)\\1", "(?<x>b)", "(?<x>c)", "(?i)token");
+    assertThat(m.find("aa b c TOKEN")).containsExactly("aa", "b", "c", "TOKEN").inOrder();
+  }
+
+  @Test
+  public void noMatch() {
+    assertThat(matcher("foo", "ba+r", "\\d{3}").find("nothing to see here")).isEmpty();
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Strings;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class LineCursorTest {
+
+  private static LineCursor cursor(String content) {
+    return new LineCursor(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void readAllLines() throws Exception {
+    try (LineCursor c = cursor("a\r\nb\n\nc")) {
+      assertThat(c.nextLine()).isEqualTo("a");
+      assertThat(c.nextLine()).isEqualTo("b");
+      assertThat(c.nextLine()).isEmpty();
+      assertThat(c.nextLine()).isEqualTo("c");
+      assertThat(c.nextLine()).isNull();
+    }
+  }
+
+  @Test
+  public void noLineAfterTrailingNewline() throws Exception {
+    try (LineCursor c = cursor("a\n")) {
+      assertThat(c.nextLine()).isEqualTo("a");
+      assertThat(c.nextLine()).isNull();
+    }
+  }
+
+  @Test
+  public void skipToLine() throws Exception {
+    try (LineCursor c = cursor("l0\nl1\nl2\nl3\n")) {
+      assertThat(c.skipTo(2)).isTrue();
+      assertThat(c.getLine()).isEqualTo(2);
+      assertThat(c.nextLine()).isEqualTo("l2");
+      assertThat(c.skipTo(4)).isTrue();
+      assertThat(c.nextLine()).isNull();
+      assertThat(c.skipTo(5)).isFalse();
+    }
+  }
+
+  @Test
+  public void lineContainsByte() throws Exception {
+    try (LineCursor c = cursor("a\nb\r\nc")) {
+      assertThat(c.nextLineContains((byte) '\r')).isFalse();
+      assertThat(c.nextLineContains((byte) '\r')).isTrue();
+      assertThat(c.getLine()).isEqualTo(2);
+      assertThat(c.nextLine()).isEqualTo("c");
+      assertThat(c.nextLineContains((byte) '\r')).isFalse();
+    }
+  }
+
+  @Test
+  public void linesLongerThanBuffer() throws Exception {
+    String longLine = Strings.repeat("x", 20000);
+    try (LineCursor c = cursor(longLine + "\n" + longLine + "\ny\n")) {
+      assertThat(c.skipTo(1)).isTrue();
+      assertThat(c.nextLine()).isEqualTo(longLine);
+      assertThat(c.nextLine()).isEqualTo("y");
+    }
+  }
+
+  @Test
+  public void multiByteCharacters() throws Exception {
+    try (LineCursor c = cursor("\u00e4\n\u20ac\u00f6\n")) {
+      assertThat(c.skipTo(1)).isTrue();
+      assertThat(c.nextLine()).isEqualTo("\u20ac\u00f6");
+    }
+  }
+}
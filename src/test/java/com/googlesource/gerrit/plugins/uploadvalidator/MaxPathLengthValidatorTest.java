@@ -50,7 +50,8 @@ public class MaxPathLengthValidatorTest extends ValidatorTestCase {
     try (RevWalk rw = new RevWalk(repo)) {
       RevCommit c = makeCommit(rw);
       List<CommitValidationMessage> m =
-          MaxPathLengthValidator.performValidation(repo, c, rw, getMaxPathLength());
+          MaxPathLengthValidator.performValidation(
+              CommitUtils.getChangedEntries(repo, c, rw), getMaxPathLength());
       Set<String> expected = ImmutableSet.of("ERROR: path too long: " + TOO_LONG);
       assertThat(TestUtils.transformMessages(m)).containsExactlyElementsIn(expected);
     }
@@ -68,7 +69,8 @@ public class MaxPathLengthValidatorTest extends ValidatorTestCase {
         rw.parseCommit(c);
       }
       List<CommitValidationMessage> m =
-          MaxPathLengthValidator.performValidation(repo, c, rw, getMaxPathLength());
+          MaxPathLengthValidator.performValidation(
+              CommitUtils.getChangedEntries(repo, c, rw), getMaxPathLength());
       assertThat(m).isEmpty();
     }
   }
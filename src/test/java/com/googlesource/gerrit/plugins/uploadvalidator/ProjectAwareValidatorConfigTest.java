@@ -67,6 +67,21 @@ public class ProjectAwareValidatorConfigTest {
         .isFalse();
   }
 
+  @Test
+  public void isDisabledForMalformedProjectRegex() throws Exception {
+    ValidatorConfig config =
+        getConfig(
+            "[plugin \"uploadvalidator\"]\n"
+                + "   project = test[\n"
+                + "   blockedFileExtension = jar",
+            projectName);
+
+    assertThat(
+            config.isEnabled(
+                anyUser, projectName, "anyRef", "blockedFileExtension", ImmutableListMultimap.of()))
+        .isFalse();
+  }
+
   @Test
   public void isEnabledForRegexProject() throws Exception {
     String configString =
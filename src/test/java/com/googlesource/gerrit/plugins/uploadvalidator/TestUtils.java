@@ -19,6 +19,8 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 import com.google.common.io.Files;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
 import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
 import java.io.File;
@@ -61,6 +63,13 @@ public class TestUtils {
   public static final LoadingCache<String, Pattern> PATTERN_CACHE =
       CacheBuilder.newBuilder().build(new PatternCacheModule.Loader());
 
+  public static ContentTypeUtil createContentTypeUtil() {
+    return new ContentTypeUtil(
+        PATTERN_CACHE,
+        CacheBuilder.newBuilder().build(),
+        ContentTypeUtil.DEFAULT_CONTENT_PREFIX_SIZE);
+  }
+
   public static Repository createNewRepository(File repoFolder) throws IOException {
     Repository repository = FileRepositoryBuilder.create(new File(repoFolder, ".git"));
     repository.create();
@@ -143,6 +152,18 @@ public class TestUtils {
     return repo.file(pathname, repo.blob(content));
   }
 
+  public static CommitContext createCommitContext(Repository repo, RevWalk rw, RevCommit c)
+      throws IOException {
+    return new CommitContext(
+        Project.nameKey("project"),
+        repo,
+        rw,
+        c,
+        CommitUtils.getChangedEntries(repo, c, rw),
+        new BlobContentCache(CacheBuilder.newBuilder().build()),
+        new ValidationMetrics(new DisabledMetricMaker()));
+  }
+
   public static RevCommit makeCommit(
       RevWalk rw, DirCacheEntry[] entries, TestRepository<Repository> repo) throws Exception {
     return makeCommit(rw, entries, repo, (RevCommit[]) null);
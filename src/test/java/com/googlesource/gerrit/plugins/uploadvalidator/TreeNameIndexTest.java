@@ -0,0 +1,116 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.createEmptyDirCacheEntries;
+import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.makeCommit;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TreeNameIndexTest extends ValidatorTestCase {
+  private TreeNameIndex index;
+  private RevCommit c;
+
+  @Before
+  public void setUp() throws Exception {
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    c =
+        makeCommit(
+            testRepo.getRevWalk(),
+            createEmptyDirCacheEntries(
+                ImmutableList.of("a", "B", "Dir/x", "b", "c", "dir/y"), testRepo),
+            testRepo);
+    try (ObjectReader reader = repo.newObjectReader()) {
+      index = TreeNameIndex.read(reader, c.getTree(), Locale.ENGLISH);
+    }
+  }
+
+  private static List<String> names(List<TreeNameIndex.Entry> entries) {
+    return entries.stream().map(TreeNameIndex.Entry::getName).collect(Collectors.toList());
+  }
+
+  @Test
+  public void entriesAreLookedUpByFoldedName() throws Exception {
+    assertThat(index.size()).isEqualTo(6);
+    assertThat(names(index.get("a"))).containsExactly("a");
+    assertThat(names(index.get("c"))).containsExactly("c");
+    assertThat(index.get("A")).isEmpty();
+    assertThat(index.get("d")).isEmpty();
+
+    TreeNameIndex.Entry dir = index.get("dir").get(0);
+    assertThat(dir.getName()).isEqualTo("Dir");
+    assertThat(dir.isTree()).isTrue();
+    try (ObjectReader reader = repo.newObjectReader()) {
+      assertThat(dir.getObjectId())
+          .isEqualTo(TreeWalk.forPath(reader, "Dir", c.getTree()).getObjectId(0));
+    }
+  }
+
+  @Test
+  public void allCollidingEntriesAreReturned() throws Exception {
+    assertThat(names(index.get("b"))).containsExactly("B", "b").inOrder();
+    assertThat(names(index.get("dir"))).containsExactly("Dir", "dir").inOrder();
+  }
+
+  @Test
+  public void serializedIndexIsEqual() throws Exception {
+    TreeNameIndex copy =
+        TreeNameIndex.Serializer.INSTANCE.deserialize(
+            TreeNameIndex.Serializer.INSTANCE.serialize(index));
+    assertThat(copy.size()).isEqualTo(index.size());
+    for (String name : ImmutableList.of("a", "b", "c", "dir")) {
+      List<TreeNameIndex.Entry> expected = index.get(name);
+      List<TreeNameIndex.Entry> actual = copy.get(name);
+      assertThat(names(actual)).isEqualTo(names(expected));
+      for (int i = 0; i < expected.size(); i++) {
+        assertThat(actual.get(i).getObjectId()).isEqualTo(expected.get(i).getObjectId());
+        assertThat(actual.get(i).isTree()).isEqualTo(expected.get(i).isTree());
+      }
+    }
+  }
+
+  @Test
+  public void serializedIndexKeepsLongNames() throws Exception {
+    // Encodes to more bytes than writeUTF supports.
+    String longName = Strings.repeat("\u00e9", 40_000) + "A";
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    RevCommit commit =
+        makeCommit(
+            testRepo.getRevWalk(),
+            createEmptyDirCacheEntries(ImmutableList.of(longName, "b"), testRepo),
+            testRepo);
+    try (ObjectReader reader = repo.newObjectReader()) {
+      TreeNameIndex copy =
+          TreeNameIndex.Serializer.INSTANCE.deserialize(
+              TreeNameIndex.Serializer.INSTANCE.serialize(
+                  TreeNameIndex.read(reader, commit.getTree(), Locale.ENGLISH)));
+      assertThat(names(copy.get(longName.toLowerCase(Locale.ENGLISH))))
+          .containsExactly(longName);
+      assertThat(names(copy.get("b"))).containsExactly("b");
+    }
+  }
+}
@@ -0,0 +1,900 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.EMPTY_CONTENT;
+import static com.googlesource.gerrit.plugins.uploadvalidator.TestUtils.createDirCacheEntry;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.validators.CommitValidationException;
+import com.google.gerrit.server.git.validators.CommitValidationMessage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.Test;
+
+public class ValidationEngineTest extends ValidatorTestCase {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+  private static final String CONFIG =
+      "[plugin \"uploadvalidator\"]\n"
+          + "blockedFileExtension = .jar\n"
+          + "maxPathLength = 10\n"
+          + "requiredFooter = Bug\n";
+
+  private RevCommit makeCommit(RevWalk rw) throws Exception {
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    return TestUtils.makeCommit(
+        rw,
+        new DirCacheEntry[] {
+          createDirCacheEntry("foo.jar", EMPTY_CONTENT, testRepo),
+          createDirCacheEntry("path/to/bar.txt", EMPTY_CONTENT, testRepo)
+        },
+        testRepo);
+  }
+
+  private static List<ValidationRule> createRules(ValidationRule.Factory... factories)
+      throws Exception {
+    FakeConfigFactory cfgFactory = new FakeConfigFactory(Project.nameKey("project"), CONFIG);
+    ImmutableList.Builder<ValidationRule> rules = ImmutableList.builder();
+    for (ValidationRule.Factory factory : factories) {
+      rules.add(factory.create(cfgFactory.get(Project.nameKey("project"))));
+    }
+    return rules.build();
+  }
+
+  @Test
+  public void messagesAreReportedPerRule() throws Exception {
+    List<ValidationRule> rules =
+        createRules(
+            new FileExtensionValidator(), new MaxPathLengthValidator(), new FooterValidator());
+    try (RevWalk rw = new RevWalk(repo)) {
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> m =
+          ValidationEngine.validate(TestUtils.createCommitContext(repo, rw, makeCommit(rw)), rules);
+      assertThat(TestUtils.transformMessages(m.get(rules.get(0))))
+          .containsExactly("ERROR: blocked file: foo.jar");
+      assertThat(TestUtils.transformMessages(m.get(rules.get(1))))
+          .containsExactly("ERROR: path too long: path/to/bar.txt");
+      assertThat(TestUtils.transformMessages(m.get(rules.get(2))))
+          .containsExactly("ERROR: missing required footer: Bug");
+    }
+  }
+
+  @Test
+  public void failingRuleIsReportedWithItsErrorReason() throws Exception {
+    ValidationRule failing =
+        new ValidationRule() {
+          @Override
+          public String getRejectReason() {
+            return "rejected";
+          }
+
+          @Override
+          public String getErrorReason() {
+            return "failed to check";
+          }
+
+          @Override
+          public boolean inspectsContent() {
+            return true;
+          }
+
+          @Override
+          public void checkContent(
+              CommitContext ctx,
+              ChangedEntry entry,
+              ObjectLoader ol,
+              List<CommitValidationMessage> messages)
+              throws IOException {
+            throw new IOException("broken");
+          }
+        };
+    try (RevWalk rw = new RevWalk(repo)) {
+      CommitContext ctx = TestUtils.createCommitContext(repo, rw, makeCommit(rw));
+      CommitValidationException e =
+          assertThrows(
+              CommitValidationException.class, () -> ValidationEngine.validate(ctx, failing));
+      assertThat(e).hasMessageThat().isEqualTo("failed to check");
+    }
+  }
+
+  private static class ContentRule implements ValidationRule {
+    @Override
+    public String getRejectReason() {
+      return "contains x";
+    }
+
+    @Override
+    public String getErrorReason() {
+      return "failed to check for x";
+    }
+
+    @Override
+    public boolean inspectsContent() {
+      return true;
+    }
+
+    @Override
+    public void checkContent(
+        CommitContext ctx,
+        ChangedEntry entry,
+        ObjectLoader ol,
+        List<CommitValidationMessage> messages)
+        throws IOException {
+      if (new String(ol.getCachedBytes(), UTF_8).contains("x")) {
+        messages.add(new CommitValidationMessage("x found in " + entry.getPath(), true));
+      }
+    }
+  }
+
+  @Test
+  public void parallelValidationReportsMessagesInPathOrder() throws Exception {
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    int files = 4 * ValidationEngine.MIN_ENTRIES_PER_TASK + 3;
+    DirCacheEntry[] entries = new DirCacheEntry[files];
+    for (int i = 0; i < files; i++) {
+      String path = String.format("dir%d/file%04d%s", i % 3, i, i % 5 == 0 ? ".jar" : ".txt");
+      entries[i] = createDirCacheEntry(path, (i % 7 == 0 ? "x" : "y").getBytes(UTF_8), testRepo);
+    }
+    List<ValidationRule> rules = new ArrayList<>(createRules(new FileExtensionValidator()));
+    rules.add(new ContentRule());
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try (RevWalk rw = new RevWalk(repo)) {
+      RevCommit c = TestUtils.makeCommit(rw, entries, testRepo);
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> sequential =
+          ValidationEngine.validate(TestUtils.createCommitContext(repo, rw, c), rules);
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> parallel =
+          ValidationEngine.validate(
+              TestUtils.createCommitContext(repo, rw, c), rules, MessageLimits.NONE, executor, 4);
+      for (ValidationRule rule : rules) {
+        assertThat(TestUtils.transformMessages(parallel.get(rule)))
+            .containsExactlyElementsIn(TestUtils.transformMessages(sequential.get(rule)))
+            .inOrder();
+      }
+      assertThat(parallel.get(rules.get(1))).hasSize((files + 6) / 7);
+
+      rules.add(
+          new ContentRule() {
+            @Override
+            public void checkContent(
+                CommitContext ctx,
+                ChangedEntry entry,
+                ObjectLoader ol,
+                List<CommitValidationMessage> messages)
+                throws IOException {
+              if (entry.getPath().startsWith("dir2/")) {
+                throw new IOException("broken");
+              }
+            }
+          });
+      CommitValidationException e =
+          assertThrows(
+              CommitValidationException.class,
+              () ->
+                  ValidationEngine.validate(
+                      TestUtils.createCommitContext(repo, rw, c),
+                      rules,
+                      MessageLimits.NONE,
+                      executor,
+                      4));
+      assertThat(e).hasMessageThat().isEqualTo("failed to check for x");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void newCommitsOfPushAreListedParentsFirst() throws Exception {
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    RevCommit base = testRepo.commit().add("a.txt", "a").create();
+    testRepo.update("refs/heads/master", base);
+    RevCommit c1 = testRepo.commit().parent(base).add("b.txt", "b").create();
+    RevCommit c2 = testRepo.commit().parent(c1).add("c.txt", "c").create();
+    RevCommit c3 = testRepo.commit().parent(c2).add("d.txt", "d").create();
+
+    assertThat(
+            ValidationEngine.findNewCommits(
+                repo, new ReceiveCommand(ObjectId.zeroId(), c3, "refs/for/master")))
+        .containsExactly(c1, c2, c3)
+        .inOrder();
+    assertThat(
+            ValidationEngine.findNewCommits(repo, new ReceiveCommand(c1, c3, "refs/heads/feature")))
+        .containsExactly(c2, c3)
+        .inOrder();
+
+    // Commits which are reachable from a tag are not new either.
+    testRepo.update("refs/tags/v1", c1);
+    assertThat(
+            ValidationEngine.findNewCommits(
+                repo, new ReceiveCommand(ObjectId.zeroId(), c3, "refs/for/master")))
+        .containsExactly(c2, c3)
+        .inOrder();
+
+    // Changes are not considered, Gerrit skips their commits itself.
+    testRepo.update("refs/changes/02/2/1", c2);
+    assertThat(
+            ValidationEngine.findNewCommits(
+                repo, new ReceiveCommand(ObjectId.zeroId(), c3, "refs/for/master")))
+        .containsExactly(c2, c3)
+        .inOrder();
+  }
+
+  /**
+   * Rule which records the commits it checked and the threads it checked them on. It rejects the
+   * commits which add a file named "bad".
+   */
+  private static class RecordingRule implements ValidationRule {
+    final List<ObjectId> checked = Collections.synchronizedList(new ArrayList<>());
+    final Map<ObjectId, Thread> threads = new ConcurrentHashMap<>();
+
+    @Override
+    public String getRejectReason() {
+      return "contains bad";
+    }
+
+    @Override
+    public String getErrorReason() {
+      return "failed to check for bad";
+    }
+
+    @Override
+    public void checkCommit(CommitContext ctx, List<CommitValidationMessage> messages)
+        throws IOException {
+      ObjectId id = ctx.getCommit().copy();
+      checked.add(id);
+      threads.put(id, Thread.currentThread());
+      if (ctx.getEntries().stream().anyMatch(e -> e.getPath().equals("bad"))) {
+        messages.add(new CommitValidationMessage("bad found", true));
+      }
+    }
+  }
+
+  private ValidationPlan createPlan(ValidationRule rule) throws Exception {
+    return createPlan(rule, CONFIG);
+  }
+
+  private ValidationPlan createPlan(ValidationRule rule, String config) throws Exception {
+    FakeConfigFactory cfgFactory = new FakeConfigFactory(PROJECT, config);
+    PluginConfig cfg = cfgFactory.get(PROJECT);
+    ValidatorConfig.Filter filter =
+        new ValidatorConfig("uploadvalidator", cfgFactory, new FakeGroupByNameFinder())
+            .compile(PROJECT, cfg);
+    ValidationRule.Factory factory =
+        new ValidationRule.Factory() {
+          @Override
+          public String getValidatorOp() {
+            return "recording";
+          }
+
+          @Override
+          public ValidationRule create(PluginConfig cfg) {
+            return rule;
+          }
+        };
+    return ValidationPlan.compile(PROJECT, cfg, filter, ImmutableList.of(factory));
+  }
+
+  private ValidationEngine createEngine(ExecutorService executor, ValidationPlan... plans)
+      throws Exception {
+    ValidationPlanCache planCache = mock(ValidationPlanCache.class);
+    when(planCache.get(PROJECT)).thenReturn(plans[0], Arrays.copyOfRange(plans, 1, plans.length));
+    GitRepositoryManager repoManager = mock(GitRepositoryManager.class);
+    when(repoManager.openRepository(PROJECT))
+        .thenAnswer(
+            invocation -> {
+              // The engine closes every repository it opened.
+              repo.incrementOpen();
+              return repo;
+            });
+    ValidationExecutor validationExecutor = mock(ValidationExecutor.class);
+    when(validationExecutor.get()).thenReturn(executor);
+    when(validationExecutor.getThreads()).thenReturn(2);
+    return new ValidationEngine(
+        planCache,
+        repoManager,
+        new ChangedEntriesCache(CacheBuilder.newBuilder().build()),
+        new ValidationResultCache(CacheBuilder.newBuilder().build()),
+        validationExecutor,
+        new ValidationMetrics(new DisabledMetricMaker()),
+        "uploadvalidator");
+  }
+
+  /** Creates a commit on master and a chain of new commits on top, each adding one file. */
+  private List<RevCommit> makePush(String... files) throws Exception {
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    RevCommit parent = testRepo.commit().add("base.txt", "base").create();
+    testRepo.update("refs/heads/master", parent);
+    List<RevCommit> push = new ArrayList<>();
+    for (String file : files) {
+      parent = testRepo.commit().parent(parent).add(file, file).create();
+      push.add(parent);
+    }
+    return push;
+  }
+
+  private static CommitReceivedEvent receiveEvent(
+      ReceiveCommand command, RevWalk rw, ObjectId commit) throws IOException {
+    CommitReceivedEvent event = new CommitReceivedEvent();
+    event.command = command;
+    event.project = Project.builder(PROJECT).build();
+    event.refName = command.getRefName();
+    event.pushOptions = ImmutableListMultimap.of();
+    event.revWalk = rw;
+    event.commit = rw.parseCommit(commit);
+    return event;
+  }
+
+  @Test
+  public void commitsOfPushAreServedFromBatch() throws Exception {
+    List<RevCommit> push = makePush("a", "b", "c");
+    CountDownLatch lastChecked = new CountDownLatch(1);
+    RecordingRule rule =
+        new RecordingRule() {
+          @Override
+          public void checkCommit(CommitContext ctx, List<CommitValidationMessage> messages)
+              throws IOException {
+            super.checkCommit(ctx, messages);
+            if (ctx.getCommit().equals(push.get(2))) {
+              lastChecked.countDown();
+            } else if (ctx.getCommit().equals(push.get(0))) {
+              // Gives the pool the time to start the following commits.
+              await(lastChecked);
+            }
+          }
+        };
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (RevWalk rw = new RevWalk(repo)) {
+      ValidationEngine engine = createEngine(executor, createPlan(rule));
+      ReceiveCommand command =
+          new ReceiveCommand(ObjectId.zeroId(), push.get(2), "refs/for/master");
+      for (RevCommit c : push) {
+        assertThat(engine.onCommitReceived(receiveEvent(command, rw, c))).isEmpty();
+      }
+      // Every commit was validated once, ahead of Gerrit asking for it.
+      assertThat(rule.checked).containsExactlyElementsIn(push);
+      assertThat(rule.threads.get(push.get(2))).isNotEqualTo(Thread.currentThread());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void commitIsValidatedInlineIfRulesOfBatchDiffer() throws Exception {
+    RecordingRule batchRule = new RecordingRule();
+    RecordingRule otherRule = new RecordingRule();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (RevWalk rw = new RevWalk(repo)) {
+      ValidationEngine engine =
+          createEngine(executor, createPlan(batchRule), createPlan(otherRule));
+      List<RevCommit> push = makePush("a", "b");
+      ReceiveCommand command =
+          new ReceiveCommand(ObjectId.zeroId(), push.get(1), "refs/for/master");
+      engine.onCommitReceived(receiveEvent(command, rw, push.get(0)));
+      engine.onCommitReceived(receiveEvent(command, rw, push.get(1)));
+      assertThat(otherRule.checked).containsExactly(push.get(1));
+      assertThat(otherRule.threads.get(push.get(1))).isEqualTo(Thread.currentThread());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void commitIsValidatedInlineIfMissingFromBatch() throws Exception {
+    RecordingRule rule = new RecordingRule();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (RevWalk rw = new RevWalk(repo)) {
+      ValidationEngine engine = createEngine(executor, createPlan(rule));
+      List<RevCommit> push = makePush("a", "b");
+      ReceiveCommand command =
+          new ReceiveCommand(ObjectId.zeroId(), push.get(1), "refs/for/master");
+      engine.onCommitReceived(receiveEvent(command, rw, push.get(0)));
+      // The parent is already on master, it is not part of the batch.
+      RevCommit base = push.get(0).getParent(0);
+      engine.onCommitReceived(receiveEvent(command, rw, base));
+      assertThat(rule.checked).contains(base);
+      assertThat(rule.threads.get(base)).isEqualTo(Thread.currentThread());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void failureOfBatchTaskIsReported() throws Exception {
+    List<RevCommit> push = makePush("a", "b", "c");
+    CountDownLatch failed = new CountDownLatch(1);
+    RecordingRule rule =
+        new RecordingRule() {
+          @Override
+          public void checkCommit(CommitContext ctx, List<CommitValidationMessage> messages)
+              throws IOException {
+            super.checkCommit(ctx, messages);
+            if (ctx.getCommit().equals(push.get(1))) {
+              failed.countDown();
+              throw new IOException("broken");
+            } else if (ctx.getCommit().equals(push.get(0))) {
+              // Gives the pool the time to start the failing commit.
+              await(failed);
+            }
+          }
+        };
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (RevWalk rw = new RevWalk(repo)) {
+      ValidationEngine engine = createEngine(executor, createPlan(rule));
+      ReceiveCommand command =
+          new ReceiveCommand(ObjectId.zeroId(), push.get(2), "refs/for/master");
+      engine.onCommitReceived(receiveEvent(command, rw, push.get(0)));
+      CommitValidationException e =
+          assertThrows(
+              CommitValidationException.class,
+              () -> engine.onCommitReceived(receiveEvent(command, rw, push.get(1))));
+      assertThat(e).hasMessageThat().isEqualTo("failed to check for bad");
+      // The failure was raised by the batch, the commit was not validated again.
+      assertThat(rule.threads.get(push.get(1))).isNotEqualTo(Thread.currentThread());
+      assertThat(Collections.frequency(rule.checked, push.get(1))).isEqualTo(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void rejectionCancelsRemainingCommitsOfBatch() throws Exception {
+    List<RevCommit> push = makePush("bad", "b", "c");
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingRule rule =
+        new RecordingRule() {
+          @Override
+          public void checkCommit(CommitContext ctx, List<CommitValidationMessage> messages)
+              throws IOException {
+            super.checkCommit(ctx, messages);
+            if (ctx.getCommit().equals(push.get(1))) {
+              await(release);
+            }
+          }
+        };
+    // A single thread validates the commits of the batch in order.
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (RevWalk rw = new RevWalk(repo)) {
+      ValidationEngine engine = createEngine(executor, createPlan(rule));
+      ReceiveCommand command =
+          new ReceiveCommand(ObjectId.zeroId(), push.get(2), "refs/for/master");
+      assertThrows(
+          CommitValidationException.class,
+          () -> engine.onCommitReceived(receiveEvent(command, rw, push.get(0))));
+      release.countDown();
+      executor.shutdown();
+      assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+      // The second commit may have started before the rejection, the third one starts after it.
+      assertThat(rule.checked).contains(push.get(0));
+      assertThat(rule.checked).doesNotContain(push.get(2));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void commitsWhichDidNotStartAreValidatedInline() throws Exception {
+    RecordingRule rule = new RecordingRule();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (RevWalk rw = new RevWalk(repo)) {
+      // The pool is busy with another push for the whole push.
+      executor.execute(() -> await(release));
+      ValidationEngine engine = createEngine(executor, createPlan(rule));
+      List<RevCommit> push = makePush("a", "b", "c");
+      ReceiveCommand command =
+          new ReceiveCommand(ObjectId.zeroId(), push.get(2), "refs/for/master");
+      for (RevCommit c : push) {
+        assertThat(engine.onCommitReceived(receiveEvent(command, rw, c))).isEmpty();
+      }
+      release.countDown();
+      executor.shutdown();
+      assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+      // The receive thread took every commit back, the pool did not validate them again.
+      assertThat(rule.checked).containsExactlyElementsIn(push);
+      Thread current = Thread.currentThread();
+      assertThat(rule.threads)
+          .containsExactly(push.get(0), current, push.get(1), current, push.get(2), current);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void largePushDoesNotStarveOtherPushes() throws Exception {
+    RecordingRule rule = new RecordingRule();
+    ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
+    try (RevWalk rw = new RevWalk(repo)) {
+      ValidationEngine engine = createEngine(executor, createPlan(rule));
+      String[] files = new String[50];
+      for (int i = 0; i < files.length; i++) {
+        files[i] = "f" + i;
+      }
+      List<RevCommit> push = makePush(files);
+      ReceiveCommand command =
+          new ReceiveCommand(ObjectId.zeroId(), push.get(49), "refs/for/master");
+      engine.onCommitReceived(receiveEvent(command, rw, push.get(0)));
+
+      // A task of another push, e.g. a per-file task, is queued behind the window of the large
+      // push only, not behind all of its commits.
+      executor.submit(() -> {}).get(10, TimeUnit.SECONDS);
+      assertThat(executor.getTaskCount()).isAtMost(4);
+      assertThat(rule.checked.size()).isAtMost(3);
+
+      for (RevCommit c : push.subList(1, push.size())) {
+        engine.onCommitReceived(receiveEvent(command, rw, c));
+      }
+      assertThat(rule.checked).containsExactlyElementsIn(push);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private RevCommit makeCommitWithJars(RevWalk rw, int jars) throws Exception {
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    DirCacheEntry[] entries = new DirCacheEntry[jars];
+    for (int i = 0; i < jars; i++) {
+      entries[i] = createDirCacheEntry("f" + i + ".jar", "x".getBytes(UTF_8), testRepo);
+    }
+    return TestUtils.makeCommit(rw, entries, testRepo);
+  }
+
+  @Test
+  public void ruleStopsAtItsMessageLimit() throws Exception {
+    List<ValidationRule> rules = new ArrayList<>(createRules(new FileExtensionValidator()));
+    AtomicInteger checked = new AtomicInteger();
+    rules.add(
+        new ContentRule() {
+          @Override
+          public void checkContent(
+              CommitContext ctx,
+              ChangedEntry entry,
+              ObjectLoader ol,
+              List<CommitValidationMessage> messages)
+              throws IOException {
+            checked.incrementAndGet();
+            super.checkContent(ctx, entry, ol, messages);
+          }
+        });
+    try (RevWalk rw = new RevWalk(repo)) {
+      CommitContext ctx = TestUtils.createCommitContext(repo, rw, makeCommitWithJars(rw, 10));
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> m =
+          ValidationEngine.validate(ctx, rules, new MessageLimits(0, 3), null, 1);
+      assertThat(TestUtils.transformMessages(m.get(rules.get(0))))
+          .containsExactly(
+              "ERROR: blocked file: f0.jar",
+              "ERROR: blocked file: f1.jar",
+              "ERROR: blocked file: f2.jar",
+              "ERROR: ... and possibly more, the remaining files were not checked")
+          .inOrder();
+      assertThat(m.get(rules.get(1))).hasSize(4);
+      assertThat(checked.get()).isEqualTo(3);
+    }
+  }
+
+  @Test
+  public void validationStopsAtTotalMessageLimit() throws Exception {
+    List<ValidationRule> rules = new ArrayList<>(createRules(new FileExtensionValidator()));
+    rules.add(new ContentRule());
+    try (RevWalk rw = new RevWalk(repo)) {
+      CommitContext ctx = TestUtils.createCommitContext(repo, rw, makeCommitWithJars(rw, 10));
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> m =
+          ValidationEngine.validate(ctx, rules, new MessageLimits(5, 0), null, 1);
+      // Both rules report a message for each of the first 3 files, 6 messages in total.
+      assertThat(TestUtils.transformMessages(m.get(rules.get(0))))
+          .containsExactly(
+              "ERROR: blocked file: f0.jar",
+              "ERROR: blocked file: f1.jar",
+              "ERROR: blocked file: f2.jar",
+              "ERROR: ... and possibly more, the remaining files were not checked")
+          .inOrder();
+      assertThat(TestUtils.transformMessages(m.get(rules.get(1))))
+          .containsExactly(
+              "ERROR: x found in f0.jar",
+              "ERROR: x found in f1.jar",
+              "ERROR: ... and at least 1 more, the remaining files were not checked")
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void noSummaryWithinLimits() throws Exception {
+    List<ValidationRule> rules = createRules(new FileExtensionValidator());
+    try (RevWalk rw = new RevWalk(repo)) {
+      CommitContext ctx = TestUtils.createCommitContext(repo, rw, makeCommitWithJars(rw, 3));
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> m =
+          ValidationEngine.validate(ctx, rules, new MessageLimits(10, 3), null, 1);
+      assertThat(m.get(rules.get(0))).hasSize(3);
+    }
+  }
+
+  @Test
+  public void passedContentChecksAreNotRepeated() throws Exception {
+    AtomicInteger checked = new AtomicInteger();
+    ValidationRule rule =
+        new ContentRule() {
+          @Override
+          public String getContentCheckKey(CommitContext ctx, ChangedEntry entry) {
+            return "";
+          }
+
+          @Override
+          public void checkContent(
+              CommitContext ctx,
+              ChangedEntry entry,
+              ObjectLoader ol,
+              List<CommitValidationMessage> messages)
+              throws IOException {
+            checked.incrementAndGet();
+            super.checkContent(ctx, entry, ol, messages);
+          }
+        };
+    ValidationResultCache resultCache =
+        new ValidationResultCache(CacheBuilder.newBuilder().build());
+    ValidationResultCache.Results results =
+        resultCache.forRules(ValidationPlan.EMPTY, ImmutableList.of("x"));
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    try (RevWalk rw = new RevWalk(repo)) {
+      RevCommit c =
+          TestUtils.makeCommit(
+              rw,
+              new DirCacheEntry[] {
+                createDirCacheEntry("a.txt", "x".getBytes(UTF_8), testRepo),
+                createDirCacheEntry("b.txt", "y".getBytes(UTF_8), testRepo),
+                createDirCacheEntry("c.txt", "y".getBytes(UTF_8), testRepo)
+              },
+              testRepo);
+      for (int i = 1; i <= 2; i++) {
+        ImmutableListMultimap<ValidationRule, CommitValidationMessage> m =
+            ValidationEngine.validate(
+                TestUtils.createCommitContext(repo, rw, c),
+                ImmutableList.of(rule),
+                MessageLimits.NONE,
+                results,
+                null,
+                1);
+        assertThat(TestUtils.transformMessages(m.get(rule)))
+            .containsExactly("ERROR: x found in a.txt");
+      }
+      // The failed check is repeated to report its message, the passed ones are not.
+      assertThat(checked.get()).isEqualTo(4);
+
+      // The results are not shared with other rules.
+      ValidationEngine.validate(
+          TestUtils.createCommitContext(repo, rw, c),
+          ImmutableList.of(rule),
+          MessageLimits.NONE,
+          resultCache.forRules(ValidationPlan.EMPTY, ImmutableList.of("y")),
+          null,
+          1);
+      assertThat(checked.get()).isEqualTo(7);
+    }
+  }
+
+  @Test
+  public void validationStopsAtExceededDeadline() throws Exception {
+    List<ValidationRule> rules = new ArrayList<>(createRules(new FileExtensionValidator()));
+    AtomicInteger checked = new AtomicInteger();
+    rules.add(
+        new ContentRule() {
+          @Override
+          public void checkContent(
+              CommitContext ctx,
+              ChangedEntry entry,
+              ObjectLoader ol,
+              List<CommitValidationMessage> messages)
+              throws IOException {
+            checked.incrementAndGet();
+          }
+        });
+    try (RevWalk rw = new RevWalk(repo)) {
+      CommitContext ctx = TestUtils.createCommitContext(repo, rw, makeCommitWithJars(rw, 10));
+      ctx.setDeadline(new Deadline(System.nanoTime(), 0));
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> m =
+          ValidationEngine.validate(ctx, rules);
+      assertThat(m).isEmpty();
+      assertThat(checked.get()).isEqualTo(0);
+      assertThat(ctx.getDeadline().hasExpired()).isTrue();
+    }
+  }
+
+  @Test
+  public void contentCheckStoppedAtDeadlineKeepsEarlierMessages() throws Exception {
+    AtomicInteger checked = new AtomicInteger();
+    ValidationRule rule =
+        new ContentRule() {
+          @Override
+          public void checkContent(
+              CommitContext ctx,
+              ChangedEntry entry,
+              ObjectLoader ol,
+              List<CommitValidationMessage> messages)
+              throws IOException {
+            if (checked.incrementAndGet() == 3) {
+              throw new Deadline.ExceededException();
+            }
+            super.checkContent(ctx, entry, ol, messages);
+          }
+        };
+    try (RevWalk rw = new RevWalk(repo)) {
+      CommitContext ctx = TestUtils.createCommitContext(repo, rw, makeCommitWithJars(rw, 10));
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> m =
+          ValidationEngine.validate(ctx, ImmutableList.of(rule));
+      assertThat(TestUtils.transformMessages(m.get(rule)))
+          .containsExactly(
+              "ERROR: x found in f0.jar",
+              "ERROR: x found in f1.jar",
+              "ERROR: ... and possibly more, the remaining files were not checked")
+          .inOrder();
+      assertThat(checked.get()).isEqualTo(3);
+    }
+  }
+
+  @Test
+  public void wrappedTextStopsMatchingAtDeadline() throws Exception {
+    String text = Strings.repeat("a", 10_000);
+    assertThat(Deadline.NONE.wrap(text)).isSameInstanceAs(text);
+    CharSequence wrapped = new Deadline(System.nanoTime(), 0).wrap(text);
+    UncheckedIOException e =
+        assertThrows(
+            UncheckedIOException.class, () -> Pattern.compile("b").matcher(wrapped).find());
+    assertThat(e).hasCauseThat().isInstanceOf(Deadline.ExceededException.class);
+  }
+
+  @Test
+  public void commitDeadlineIsCutToRemainingPushBudget() throws Exception {
+    assertThat(TimeBudget.NONE.start(0)).isSameInstanceAs(Deadline.NONE);
+    long now = System.nanoTime();
+    assertThat(new TimeBudget(60, 0, false).start(now).isExceeded()).isFalse();
+    assertThat(new TimeBudget(60, 120, false).start(now).isExceeded()).isFalse();
+    long pushStart = now - TimeUnit.SECONDS.toNanos(120);
+    assertThat(new TimeBudget(60, 120, false).start(pushStart).isExceeded()).isTrue();
+  }
+
+  @Test
+  public void retriedPushGetsItsOwnTimeBudget() throws Exception {
+    AtomicBoolean slow = new AtomicBoolean(true);
+    RecordingRule rule =
+        new RecordingRule() {
+          @Override
+          public void checkCommit(CommitContext ctx, List<CommitValidationMessage> messages)
+              throws IOException {
+            super.checkCommit(ctx, messages);
+            if (slow.getAndSet(false)) {
+              try {
+                Thread.sleep(1100);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+          }
+        };
+    String config = CONFIG + "maxPushValidationSeconds = 1\n" + "validationTimeoutAction = warn\n";
+    try (RevWalk rw = new RevWalk(repo)) {
+      ValidationEngine engine = createEngine(null, createPlan(rule, config));
+      RevCommit c = makePush("a").get(0);
+      // The first attempt uses up the budget of its push and is accepted with a warning.
+      assertThat(
+              engine.onCommitReceived(
+                  receiveEvent(new ReceiveCommand(ObjectId.zeroId(), c, "refs/for/master"), rw, c)))
+          .hasSize(1);
+      // The same push is retried right away and gets the full budget again.
+      assertThat(
+              engine.onCommitReceived(
+                  receiveEvent(new ReceiveCommand(ObjectId.zeroId(), c, "refs/for/master"), rw, c)))
+          .isEmpty();
+      assertThat(rule.checked).containsExactly(c, c);
+    }
+  }
+
+  @Test
+  public void timesOfRulesAndExaminedFilesAreRecorded() throws Exception {
+    ValidationMetrics metrics = mock(ValidationMetrics.class);
+    List<ValidationRule> rules = new ArrayList<>(createRules(new FileExtensionValidator()));
+    rules.add(new ContentRule());
+    TestRepository<Repository> testRepo = new TestRepository<>(repo);
+    try (RevWalk rw = new RevWalk(repo)) {
+      RevCommit c =
+          TestUtils.makeCommit(
+              rw,
+              new DirCacheEntry[] {
+                createDirCacheEntry("a.txt", "ab".getBytes(UTF_8), testRepo),
+                createDirCacheEntry("b.txt", "abc".getBytes(UTF_8), testRepo)
+              },
+              testRepo);
+      CommitContext ctx =
+          new CommitContext(
+              Project.nameKey("project"),
+              repo,
+              rw,
+              c,
+              CommitUtils.getChangedEntries(repo, c, rw),
+              new BlobContentCache(CacheBuilder.newBuilder().build()),
+              metrics);
+      assertThat(ctx.getRuleNanos()).isNull();
+      ValidationEngine.validate(ctx, rules);
+      assertThat(ctx.getRuleNanos()).hasLength(2);
+      // Only the content rule opens the files.
+      verify(metrics).recordFile(2);
+      verify(metrics).recordFile(3);
+    }
+  }
+
+  @Test
+  public void traceReportsTimesOfPhasesValidatorsAndFiles() throws Exception {
+    List<ValidationRule> rules =
+        createRules(new FileExtensionValidator(), new MaxPathLengthValidator());
+    try (RevWalk rw = new RevWalk(repo)) {
+      CommitContext ctx = TestUtils.createCommitContext(repo, rw, makeCommit(rw));
+      ctx.traceEntries();
+      ImmutableListMultimap<ValidationRule, CommitValidationMessage> m =
+          ValidationEngine.validate(ctx, rules);
+      ValidationTrace trace = new ValidationTrace("uploadvalidator");
+      trace.addPhase(ValidationMetrics.Phase.CONFIG_LOAD, 2_000_000);
+      trace.addCommit(ctx, ImmutableList.of("blockedFileExtension", "maxPathLength"), rules, m);
+      List<String> lines = TestUtils.transformMessages(trace.report("abc"));
+      assertThat(lines.get(0)).isEqualTo("MSG: uploadvalidator trace of abc:");
+      assertThat(lines.get(1)).isEqualTo("MSG:   phase config_load: 2 ms");
+      String report = String.join("\n", lines);
+      assertThat(report).containsMatch("phase tree_walk: \\d+ ms");
+      assertThat(report).containsMatch("validator blockedFileExtension: \\d+ ms, 1 messages");
+      assertThat(report).containsMatch("validator maxPathLength: \\d+ ms, 1 messages");
+      assertThat(report).containsMatch("file foo.jar: \\d+ ms");
+      assertThat(report).containsMatch("file path/to/bar.txt: \\d+ ms");
+    }
+  }
+}
@@ -0,0 +1,179 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.uploadvalidator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.gerrit.entities.CachedProjectConfig;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectState;
+import java.util.Optional;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ValidationPlanCacheTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+  private static final String CONFIG =
+      "[plugin \"uploadvalidator\"]\n"
+          + "    blockedFileExtension = jar\n"
+          + "    maxPathLength = 20\n"
+          + "    disabledValidation = maxPathLength";
+
+  private ProjectCache projectCache;
+  private ProjectState parent;
+  private ProjectState state;
+  private int configLoads;
+  private ValidationPlanCache planCache;
+
+  @Before
+  public void setUp() throws Exception {
+    parent = mockState("1111111111111111111111111111111111111111");
+    state = mockState("2222222222222222222222222222222222222222");
+    when(state.treeInOrder()).thenReturn(ImmutableList.of(parent, state));
+    projectCache = mock(ProjectCache.class);
+    when(projectCache.get(PROJECT)).thenReturn(Optional.of(state));
+
+    FakeConfigFactory configFactory = new FakeConfigFactory(PROJECT, CONFIG);
+    DynamicSet<ValidationRule.Factory> factories = new DynamicSet<>();
+    factories.add("uploadvalidator", new FileExtensionValidator());
+    factories.add("uploadvalidator", new MaxPathLengthValidator());
+    factories.add("uploadvalidator", new SymlinkValidator());
+    planCache =
+        new ValidationPlanCache(
+            CacheBuilder.newBuilder().build(),
+            projectCache,
+            p -> {
+              configLoads++;
+              return configFactory.get(p);
+            },
+            new ValidatorConfig("uploadvalidator", configFactory, new FakeGroupByNameFinder()),
+            factories);
+  }
+
+  private static ProjectState mockState(String revision) {
+    CachedProjectConfig config = mock(CachedProjectConfig.class);
+    when(config.getRevision()).thenReturn(Optional.of(ObjectId.fromString(revision)));
+    ProjectState s = mock(ProjectState.class);
+    when(s.getConfig()).thenReturn(config);
+    return s;
+  }
+
+  @Test
+  public void planContainsConfiguredRules() throws Exception {
+    ValidationPlan plan = planCache.get(PROJECT);
+    assertThat(plan.getRules().keySet())
+        .containsExactly(
+            FileExtensionValidator.KEY_BLOCKED_FILE_EXTENSION,
+            MaxPathLengthValidator.KEY_MAX_PATH_LENGTH)
+        .inOrder();
+  }
+
+  @Test
+  public void planDecidesWhetherRulesAreEnabled() throws Exception {
+    ValidationPlan plan = planCache.get(PROJECT);
+    IdentifiedUser user = new FakeUserProvider().get();
+    assertThat(
+            plan.isEnabled(
+                user,
+                "refs/heads/master",
+                FileExtensionValidator.KEY_BLOCKED_FILE_EXTENSION,
+                ImmutableListMultimap.of()))
+        .isTrue();
+    assertThat(
+            plan.isEnabled(
+                user,
+                "refs/heads/master",
+                MaxPathLengthValidator.KEY_MAX_PATH_LENGTH,
+                ImmutableListMultimap.of()))
+        .isFalse();
+    assertThat(
+            ValidationPlan.EMPTY.isEnabled(
+                user,
+                "refs/heads/master",
+                FileExtensionValidator.KEY_BLOCKED_FILE_EXTENSION,
+                ImmutableListMultimap.of()))
+        .isFalse();
+  }
+
+  @Test
+  public void planIsCompiledOncePerConfigRevision() throws Exception {
+    ValidationPlan plan = planCache.get(PROJECT);
+    assertThat(planCache.get(PROJECT)).isSameInstanceAs(plan);
+    assertThat(configLoads).isEqualTo(1);
+
+    ProjectState updated = mockState("3333333333333333333333333333333333333333");
+    when(updated.treeInOrder()).thenReturn(ImmutableList.of(parent, updated));
+    when(projectCache.get(PROJECT)).thenReturn(Optional.of(updated));
+    assertThat(planCache.get(PROJECT)).isNotSameInstanceAs(plan);
+    assertThat(configLoads).isEqualTo(2);
+  }
+
+  @Test
+  public void parentConfigChangeInvalidatesPlan() throws Exception {
+    String key = ValidationPlanCache.key(PROJECT, state);
+    ProjectState updatedParent = mockState("4444444444444444444444444444444444444444");
+    when(state.treeInOrder()).thenReturn(ImmutableList.of(updatedParent, state));
+    assertThat(ValidationPlanCache.key(PROJECT, state)).isNotEqualTo(key);
+  }
+
+  @Test
+  public void missingProjectIsNotCached() throws Exception {
+    Project.NameKey other = Project.nameKey("other");
+    when(projectCache.get(other)).thenReturn(Optional.empty());
+    ValidationPlan plan = planCache.get(other);
+    assertThat(plan.isEmpty()).isTrue();
+    planCache.get(other);
+    assertThat(configLoads).isEqualTo(2);
+  }
+
+  @Test
+  public void emptyConfigResultsInEmptyPlan() throws Exception {
+    PluginConfig cfg = PluginConfig.create("uploadvalidator", new Config(), null);
+    assertThat(
+            ValidationPlan.compile(
+                    PROJECT, cfg, null, ImmutableList.of(new FileExtensionValidator()))
+                .isEmpty())
+        .isTrue();
+  }
+
+  @Test
+  public void validationWithInvalidPatternIsSkipped() throws Exception {
+    Config config = new Config();
+    config.setString("plugin", "uploadvalidator", "invalidFilenamePattern", "[");
+    config.setString("plugin", "uploadvalidator", "blockedFileExtension", "jar");
+    PluginConfig cfg = PluginConfig.create("uploadvalidator", config, null);
+    ValidationPlan plan =
+        ValidationPlan.compile(
+            PROJECT,
+            cfg,
+            null,
+            ImmutableList.of(
+                new InvalidFilenameValidator(TestUtils.PATTERN_CACHE),
+                new FileExtensionValidator()));
+    assertThat(plan.getRules().keySet())
+        .containsExactly(FileExtensionValidator.KEY_BLOCKED_FILE_EXTENSION);
+  }
+}